@@ -4,9 +4,12 @@ import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDBException;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -18,6 +21,11 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
     protected final Codec<T> valueCodec;
     protected final Map<String, ColumnFamilyHandle> indexCfs;
 
+    private volatile SlowQueryLog slowQueryLog;
+    private volatile PointReadBatcher<T, K> readBatcher;
+    private volatile IndexCatalog indexCatalog;
+    private volatile Durability durability;
+
     protected AbstractRocksDao(
             RocksSessions sessions,
             ColumnFamilyHandle primaryCf,
@@ -45,11 +53,27 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
                 ent.indexCfs());
     }
 
+    /** The session for the calling thread: its transaction if one is bound, else auto-commit. */
+    protected final RocksSession currentSession() {
+        return sessions.current();
+    }
+
     @Override
     public Optional<T> findByKey(K key) {
         Objects.requireNonNull(key);
         try {
             RocksSession s = sessions.current();
+
+            PointReadBatcher<T, K> batcher = this.readBatcher;
+            if (batcher != null && !s.isTransactional()) {
+                try {
+                    return batcher.load(key).join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException re) throw re;
+                    throw e;
+                }
+            }
+
             byte[] kb = keyCodec.encodeKey(key);
             try (ReadOptions ro = s.newReadOptions()) {
                 byte[] vb = s.get(primaryCf, ro, kb);
@@ -60,6 +84,52 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
         }
     }
 
+    /** One multiGet for all keys; absent keys are left out, order follows {@code keys}. */
+    @Override
+    public Map<K, T> getAll(Collection<K> keys) {
+        Objects.requireNonNull(keys);
+        List<K> ks = List.copyOf(keys);
+        List<byte[]> kbs = new ArrayList<>(ks.size());
+        for (K k : ks) kbs.add(keyCodec.encodeKey(k));
+
+        List<byte[]> vbs = multiGetBytes(kbs);
+        Map<K, T> out = new LinkedHashMap<>();
+        for (int i = 0; i < ks.size(); i++) {
+            byte[] vb = vbs.get(i);
+            if (vb != null) out.put(ks.get(i), valueCodec.decode(vb));
+        }
+        return out;
+    }
+
+    List<byte[]> multiGetBytes(List<byte[]> keyBytes) {
+        if (keyBytes.isEmpty()) return List.of();
+        try {
+            RocksSession s = sessions.current();
+            try (ReadOptions ro = s.newReadOptions()) {
+                return s.multiGet(primaryCf, ro, keyBytes);
+            }
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("multiGet failed", e);
+        }
+    }
+
+    /**
+     * Routes auto-commit {@link #findByKey} calls through a {@link PointReadBatcher}: reads arriving
+     * within {@code window} of each other (or until {@code maxBatch} distinct keys) share one multiGet.
+     * Adds up to {@code window} latency per read in exchange for fewer JNI crossings.
+     */
+    public PointReadBatcher<T, K> enableReadBatching(Duration window, int maxBatch) {
+        PointReadBatcher<T, K> b = new PointReadBatcher<>(this, window, maxBatch);
+        this.readBatcher = b;
+        return b;
+    }
+
+    public void disableReadBatching() {
+        PointReadBatcher<T, K> b = this.readBatcher;
+        this.readBatcher = null;
+        if (b != null) b.dispatch();
+    }
+
     @Override
     public void upsert(K key, T value) {
         Objects.requireNonNull(key);
@@ -76,7 +146,7 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
                 oldOrNull = (oldBytes == null) ? null : valueCodec.decode(oldBytes);
             }
 
-            RocksWriteBatch batch = new RocksWriteBatch();
+            RocksWriteBatch batch = newBatch();
             batch.put(primaryCf, kb, valueCodec.encode(value));
 
             maintainIndexes(batch, key, oldOrNull, value);
@@ -87,6 +157,60 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
         }
     }
 
+    /** Batched upsert: old values come from one multiGet and all puts and index updates go in one write. */
+    @Override
+    public void putAll(Map<K, T> entries) {
+        Objects.requireNonNull(entries);
+        for (T value : entries.values()) Objects.requireNonNull(value);
+        writeAll(entries, "putAll");
+    }
+
+    /**
+     * As {@link #putAll}, but a null value deletes its key: upserts, deletes and their index changes go in
+     * one write. The bulk path of {@link WriteBehindDao}.
+     */
+    void applyAll(Map<K, T> valuesOrNull) {
+        Objects.requireNonNull(valuesOrNull);
+        writeAll(valuesOrNull, "applyAll");
+    }
+
+    private void writeAll(Map<K, T> entries, String op) {
+        if (entries.isEmpty()) return;
+
+        List<K> ks = new ArrayList<>(entries.size());
+        List<byte[]> kbs = new ArrayList<>(entries.size());
+        for (K k : entries.keySet()) {
+            ks.add(Objects.requireNonNull(k));
+            kbs.add(keyCodec.encodeKey(k));
+        }
+
+        try {
+            RocksSession s = sessions.current();
+            List<byte[]> olds;
+            try (ReadOptions ro = s.newReadOptions()) {
+                olds = s.multiGet(primaryCf, ro, kbs);
+            }
+
+            RocksWriteBatch batch = newBatch();
+            for (int i = 0; i < ks.size(); i++) {
+                K key = ks.get(i);
+                T value = entries.get(key);
+                byte[] oldBytes = olds.get(i);
+                T oldOrNull = (oldBytes == null) ? null : valueCodec.decode(oldBytes);
+                if (value != null) {
+                    batch.put(primaryCf, kbs.get(i), valueCodec.encode(value));
+                    maintainIndexes(batch, key, oldOrNull, value);
+                } else if (oldOrNull != null) {
+                    batch.delete(primaryCf, kbs.get(i));
+                    maintainIndexesOnDelete(batch, key, oldOrNull);
+                }
+            }
+            s.write(batch);
+        } catch (RocksDBException e) {
+            throw new RocksDaoException(op + " failed", e);
+        }
+    }
+
     @Override
     public boolean delete(K key) {
         Objects.requireNonNull(key);
@@ -103,7 +227,7 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
 
             if (oldOrNull == null) return false;
 
-            RocksWriteBatch batch = new RocksWriteBatch();
+            RocksWriteBatch batch = newBatch();
             batch.delete(primaryCf, kb);
 
             maintainIndexesOnDelete(batch, key, oldOrNull);
@@ -115,6 +239,93 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
         }
     }
 
+    /**
+     * The read locks the key (PESSIMISTIC) or is validated at commit (OPTIMISTIC). Outside a transaction
+     * each call commits on its own and conflicts are retried; see {@link RocksSessions#atomically}.
+     */
+    @Override
+    public Optional<T> update(K key, UnaryOperator<T> fn) {
+        return Optional.ofNullable(readModifyWrite(key, fn, true, "update"));
+    }
+
+    @Override
+    public T compute(K key, UnaryOperator<T> fn) {
+        return readModifyWrite(key, fn, false, "compute");
+    }
+
+    private T readModifyWrite(K key, UnaryOperator<T> fn, boolean onlyIfPresent, String op) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(fn);
+        byte[] kb = keyCodec.encodeKey(key);
+        try {
+            return sessions.atomically(primaryCf, kb, Durability.scopedOr(durability), () -> {
+                RocksSession s = sessions.current();
+                T oldOrNull;
+                try (ReadOptions ro = s.newReadOptions()) {
+                    byte[] oldBytes = s.getForUpdate(primaryCf, ro, kb);
+                    oldOrNull = (oldBytes == null) ? null : valueCodec.decode(oldBytes);
+                }
+                if (oldOrNull == null && onlyIfPresent) return null;
+
+                T newOrNull = fn.apply(oldOrNull);
+                if (newOrNull == null && oldOrNull == null) return null;
+
+                RocksWriteBatch batch = newBatch();
+                if (newOrNull == null) {
+                    batch.delete(primaryCf, kb);
+                    maintainIndexesOnDelete(batch, key, oldOrNull);
+                } else {
+                    batch.put(primaryCf, kb, valueCodec.encode(newOrNull));
+                    maintainIndexes(batch, key, oldOrNull, newOrNull);
+                }
+                s.write(batch);
+                return newOrNull;
+            });
+        } catch (RocksDBException e) {
+            throw new RocksDaoException(op + " failed", e);
+        }
+    }
+
+    /**
+     * Merges {@code partial} over the row under {@code key} (or stores it, when there is none): the fields
+     * set in {@code partial} replace the row's, and its list elements are appended to the row's lists.
+     * Unset fields stay as they are, so a patch cannot clear a field. Needs a codec that
+     * {@link Codec#mergesByConcatenation() merges by concatenation} and, for {@link IndexEffect#NONE}, a
+     * primary CF opened with {@link RocksSchema.Merge#CONCAT}.
+     * <p>
+     * With {@code NONE} the patch is one merge write: no read, no conflict, however hot the row. It fails
+     * if {@code partial} alone has an indexed value, but cannot see a field that only feeds an index
+     * together with others, so declare {@code REINDEX} for any patch that might move an index entry.
+     */
+    public void patch(K key, T partial, IndexEffect effect) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(partial);
+        Objects.requireNonNull(effect);
+        if (!valueCodec.mergesByConcatenation()) {
+            throw new IllegalStateException("Value codec does not merge by concatenation; patch needs one (e.g. protobuf)");
+        }
+        byte[] operand = valueCodec.encode(partial);
+        if (effect == IndexEffect.REINDEX) {
+            compute(key, old -> (old == null) ? partial : valueCodec.decode(ByteArrays.concat(valueCodec.encode(old), operand)));
+            return;
+        }
+        if (hasIndexedValues(partial)) {
+            throw new IllegalArgumentException("Patch sets an indexed field; declare IndexEffect.REINDEX");
+        }
+        try {
+            RocksWriteBatch batch = newBatch();
+            batch.merge(primaryCf, keyCodec.encodeKey(key), operand);
+            sessions.current().write(batch);
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("patch failed", e);
+        }
+    }
+
+    /** True when {@code value} has an entry in some index of this DAO. */
+    boolean hasIndexedValues(T value) {
+        return false;
+    }
+
     @Override
     public boolean containsKey(K key) {
         Objects.requireNonNull(key);
@@ -140,19 +351,102 @@ public abstract class AbstractRocksDao<T, K> implements Dao<T, K> {
         }
     }
 
-    /** Your scan API (primary or index-driven) */
+    /** Default durability of this DAO's auto-commit writes; null leaves it to the session (WAL). */
+    public void setDurability(Durability d) {
+        this.durability = d;
+    }
+
+    /** An empty batch carrying the durability for writes made now: {@link Durability#call} scope, else the DAO default. */
+    protected final RocksWriteBatch newBatch() {
+        return new RocksWriteBatch().durability(Durability.scopedOr(durability));
+    }
+
+    /** Enables slow-query logging for {@link #stream(Query)}; pass null to turn it off. */
+    public void setSlowQueryLog(SlowQueryLog log) {
+        this.slowQueryLog = log;
+    }
+
+    /** Index queries fail while the catalog says the index is still being built; pass null to turn it off. */
+    public void setIndexCatalog(IndexCatalog catalog) {
+        this.indexCatalog = catalog;
+    }
+
+    private void requireQueryable(Query<K> q) {
+        IndexCatalog catalog = this.indexCatalog;
+        if (catalog == null) return;
+        for (IndexPredicate p : q.indexPredicates()) catalog.requireQueryable(p.indexName());
+    }
+
+    /**
+     * Your scan API (primary or index-driven).
+     * With {@link Query#prefetch()} set, rows are read ahead on a background worker; inside a
+     * transaction the scan stays on the caller's thread, since a Transaction is not thread-safe.
+     */
     public Stream<Map.Entry<K, T>> stream(Query<K> q) {
-        DaoSpliterator<K, T> sp = new DaoSpliterator<>(
+        requireQueryable(q);
+        RocksSession s = sessions.current();
+        if (q.prefetch() != null && !s.isTransactional()) {
+            PrefetchingSpliterator<K, T> pf = new PrefetchingSpliterator<>(() -> openProbed(s, q), q.prefetch());
+            return StreamSupport.stream(pf, false).onClose(pf::close);
+        }
+        DaoSpliterator<K, T> sp = openProbed(s, q);
+        return StreamSupport.stream(sp, false).onClose(sp::close);
+    }
+
+    private DaoSpliterator<K, T> openProbed(RocksSession s, Query<K> q) {
+        SlowQueryLog log = this.slowQueryLog;
+        SlowQueryLog.Probe probe = (log == null) ? null : log.start(getClass().getSimpleName(), q);
+        try {
+            return new DaoSpliterator<>(
+                    s,
+                    primaryCf,
+                    indexCfs,
+                    directIndexes(),
+                    keyCodec,
+                    valueCodec,
+                    q,
+                    probe,
+                    null
+            );
+        } catch (RuntimeException e) {
+            if (probe != null) probe.finish(); // restores the thread's PerfLevel
+            throw e;
+        }
+    }
+
+    /**
+     * Backpressured scan: each item is a batch of up to {@code batchSize} entries, one batch per
+     * requested unit. The iterator is released after {@code idleRelease} without demand and re-seeks
+     * past the last emitted key on the next request. Runs in auto-commit sessions on virtual threads.
+     */
+    public Flow.Publisher<List<Map.Entry<K, T>>> publish(Query<K> q, int batchSize, Duration idleRelease) {
+        return publish(q, batchSize, idleRelease, null);
+    }
+
+    /** As {@link #publish(Query, int, Duration)}, delivering on the given executor. */
+    public Flow.Publisher<List<Map.Entry<K, T>>> publish(Query<K> q, int batchSize, Duration idleRelease, Executor executor) {
+        Objects.requireNonNull(q);
+        return new ScanPublisher<>(this::openScan, q, batchSize, idleRelease, executor);
+    }
+
+    DaoSpliterator<K, T> openScan(Query<K> q, byte[] resumeAfter) {
+        requireQueryable(q);
+        return new DaoSpliterator<>(
                 sessions.current(),
                 primaryCf,
                 indexCfs,
+                directIndexes(),
                 keyCodec,
                 valueCodec,
-                q
+                q,
+                null,
+                resumeAfter
         );
-        return StreamSupport.stream(sp, false).onClose(sp::close);
     }
 
+    /** Names of indexes in the {@link IndexDef.Layout#DIRECT} layout; scans read their pk from the entry value. */
+    Set<String> directIndexes() { return Set.of(); }
+
     @Override
     public void close() { /* no-op */ }
 
@@ -0,0 +1,124 @@
+package org.github.dbjo.rdb;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * CompletableFuture facade over a {@link Dao}.
+ * <p>
+ * Calls run on the given executor (virtual threads by default), with at most {@code maxConcurrency}
+ * of them inside RocksDB at once. Concurrent {@link #findByKey} calls for the same key can be
+ * coalesced into one read of the stored bytes, which each caller decodes into its own entity and gets
+ * through its own future; a write to a key detaches any read of it that is still in flight, so later
+ * readers never join a read that started before the write. Coalescing needs an {@link AbstractRocksDao}
+ * (anything else has no bytes to share), so over other DAOs every call reads on its own.
+ * <p>
+ * Calls run outside the caller's thread, so they do not see a Spring-bound transaction: each one is
+ * an auto-commit operation.
+ */
+public final class AsyncDao<T, K> implements AutoCloseable {
+
+    private final Dao<T, K> dao;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Semaphore permits;
+    private final AbstractRocksDao<T, K> rocksDao; // null: no coalescing
+
+    private final ConcurrentHashMap<K, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private AsyncDao(Dao<T, K> dao, Executor executor, boolean ownsExecutor, int maxConcurrency, boolean coalesceReads) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency must be > 0");
+        this.dao = Objects.requireNonNull(dao, "dao");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.ownsExecutor = ownsExecutor;
+        this.permits = new Semaphore(maxConcurrency);
+        this.rocksDao = (coalesceReads && dao instanceof AbstractRocksDao<T, K> rd) ? rd : null;
+    }
+
+    /** One virtual thread per call; close() shuts the executor down. */
+    public static <T, K> AsyncDao<T, K> onVirtualThreads(Dao<T, K> dao, int maxConcurrency) {
+        return new AsyncDao<>(dao, Executors.newVirtualThreadPerTaskExecutor(), true, maxConcurrency, true);
+    }
+
+    /** Caller-owned executor; close() leaves it running. */
+    public static <T, K> AsyncDao<T, K> on(Dao<T, K> dao, Executor executor, int maxConcurrency, boolean coalesceReads) {
+        return new AsyncDao<>(dao, executor, false, maxConcurrency, coalesceReads);
+    }
+
+    public CompletableFuture<Optional<T>> findByKey(K key) {
+        Objects.requireNonNull(key);
+        AbstractRocksDao<T, K> rd = this.rocksDao;
+        if (rd == null) return submit(() -> dao.findByKey(key));
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) return decoded(existing);
+
+        byte[] kb = rd.keyCodec.encodeKey(key);
+        submit(() -> rd.multiGetBytes(List.of(kb)).get(0)).whenComplete((vb, err) -> {
+            // detach before completing, so callers arriving after completion start a fresh read
+            inFlight.remove(key, mine);
+            if (err != null) mine.completeExceptionally(err);
+            else mine.complete(vb);
+        });
+        return decoded(mine);
+    }
+
+    /** A caller's own future and entity: cancelling or completing it leaves the shared read alone. */
+    private CompletableFuture<Optional<T>> decoded(CompletableFuture<byte[]> shared) {
+        return shared.thenApply(vb -> vb == null ? Optional.empty() : Optional.of(rocksDao.valueCodec.decode(vb)));
+    }
+
+    public CompletableFuture<Map<K, T>> getAll(Collection<K> keys) {
+        List<K> copy = List.copyOf(keys);
+        return submit(() -> dao.getAll(copy));
+    }
+
+    public CompletableFuture<Boolean> containsKey(K key) {
+        Objects.requireNonNull(key);
+        return submit(() -> dao.containsKey(key));
+    }
+
+    public CompletableFuture<Void> upsert(K key, T value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        inFlight.remove(key);
+        return submit(() -> {
+            dao.upsert(key, value);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> delete(K key) {
+        Objects.requireNonNull(key);
+        inFlight.remove(key);
+        return submit(() -> dao.delete(key));
+    }
+
+    /** Reads currently shared between callers (for metrics). */
+    public int inFlightReads() { return inFlight.size(); }
+
+    private <R> CompletableFuture<R> submit(Supplier<R> op) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return op.get();
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService es) {
+            es.shutdown();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Initial-load path that bypasses memtables, the WAL and index read-before-write.
+ * <p>
+ * Entities are encoded and externally sorted by primary key (spilling to {@code workDir}), duplicates are
+ * resolved last-wins, and the winners are written to primary SST files with {@link SstFileWriter}. Index
+ * entries are derived from the winners, sorted per index and written to SST files in parallel, one task
+ * per index CF. Rows sharing a value of an unenforced {@link IndexDef.Layout#DIRECT} index leave the entry
+ * to the one loaded last, as writes through the DAO in load order would. Files are then ingested with {@code ingestExternalFile}: index CFs first, primary last,
+ * so a reader racing the load sees at worst index entries whose rows are not there yet (which scans
+ * already skip), never rows missing from an index. Each CF is ingested atomically on its own.
+ * <p>
+ * Meant for empty CFs: overwriting existing rows would leave their old index entries behind, so by
+ * default the loader refuses to run when any target CF has data.
+ */
+public final class BulkLoader<T, K> {
+
+    /** What a load did. */
+    public record Result(long rows, long duplicatesDropped, long indexEntries, int sstFiles, int spilledRuns,
+                         Duration elapsed) {}
+
+    private final RocksDB db;
+    private final EntityDef<T, K> def;
+    private final Map<String, ColumnFamilyHandle> indexCfs;
+    private final Path workDir;
+    private final long memoryBudgetBytes;
+    private final long targetFileSizeBytes;
+    private final int parallelism;
+    private final boolean requireEmpty;
+
+    private BulkLoader(Builder<T, K> b) {
+        this.db = Objects.requireNonNull(b.db, "db");
+        this.def = b.ent.def();
+        this.indexCfs = b.ent.indexCfs();
+        this.workDir = Objects.requireNonNull(b.workDir, "workDir");
+        this.memoryBudgetBytes = b.memoryBudgetBytes;
+        this.targetFileSizeBytes = b.targetFileSizeBytes;
+        this.parallelism = Math.max(1, b.parallelism);
+        this.requireEmpty = b.requireEmpty;
+    }
+
+    public static <T, K> Builder<T, K> builder(RocksDB db, ResolvedEntityDef<T, K> ent) {
+        return new Builder<>(db, Objects.requireNonNull(ent, "ent"));
+    }
+
+    public static final class Builder<T, K> {
+        private final RocksDB db;
+        private final ResolvedEntityDef<T, K> ent;
+        private Path workDir = Path.of(System.getProperty("java.io.tmpdir"));
+        private long memoryBudgetBytes = 256L << 20;
+        private long targetFileSizeBytes = 256L << 20;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private boolean requireEmpty = true;
+
+        private Builder(RocksDB db, ResolvedEntityDef<T, K> ent) {
+            this.db = db;
+            this.ent = ent;
+        }
+
+        /** Where sort runs and SST files are staged; should be on the DB's filesystem so ingest can move files. */
+        public Builder<T, K> workDir(Path dir) { this.workDir = dir; return this; }
+        /** Heap used for sort buffers before spilling, shared by the primary and index sorters. */
+        public Builder<T, K> memoryBudgetBytes(long n) { this.memoryBudgetBytes = n; return this; }
+        public Builder<T, K> targetFileSizeBytes(long n) { this.targetFileSizeBytes = n; return this; }
+        /** Index CFs sorted and written concurrently. */
+        public Builder<T, K> parallelism(int n) { this.parallelism = n; return this; }
+        public Builder<T, K> requireEmpty(boolean b) { this.requireEmpty = b; return this; }
+        public BulkLoader<T, K> build() { return new BulkLoader<>(this); }
+    }
+
+    public Result load(Stream<T> entities, Function<? super T, ? extends K> keyOf) throws RocksDBException, IOException {
+        Objects.requireNonNull(entities);
+        Objects.requireNonNull(keyOf);
+        long start = System.nanoTime();
+
+        List<IndexDef<T>> indexes = def.indexes();
+        List<ColumnFamilyHandle> idxCfList = new ArrayList<>(indexes.size());
+        for (IndexDef<T> idx : indexes) {
+            ColumnFamilyHandle cf = indexCfs.get(idx.name());
+            if (cf == null) throw new IllegalStateException("Missing index CF for " + idx.name());
+            idxCfList.add(cf);
+        }
+        if (requireEmpty) {
+            requireEmpty(def.primaryCf(), def.name());
+            for (int i = 0; i < indexes.size(); i++) requireEmpty(idxCfList.get(i), indexes.get(i).name());
+        }
+
+        Files.createDirectories(workDir);
+        Path runDir = Files.createTempDirectory(workDir, "dbjo-bulk-");
+        long sortBudget = Math.max(1L << 20, memoryBudgetBytes / 2);
+        long idxBudget = indexes.isEmpty() ? 0 : Math.max(1L << 20, memoryBudgetBytes / 2 / indexes.size());
+
+        List<ExternalSorter> idxSorters = new ArrayList<>();
+        try (ExternalSorter primary = new ExternalSorter(runDir.resolve("primary-runs"), sortBudget)) {
+            for (int i = 0; i < indexes.size(); i++) {
+                idxSorters.add(new ExternalSorter(runDir.resolve("idx-" + i + "-runs"), idxBudget));
+            }
+
+            // 1) encode + sort by primary key
+            Iterator<T> it = entities.iterator();
+            while (it.hasNext()) {
+                T e = it.next();
+                primary.add(def.keyCodec().encodeKey(keyOf.apply(e)), encodeRow(e, indexes));
+            }
+
+            // 2) last-wins dedupe, primary SSTs, index entries for the winners
+            long rows = 0;
+            List<String> primaryFiles;
+            try (SstSink sink = new SstSink(runDir.resolve("primary-sst"), targetFileSizeBytes)) {
+                Iterator<ExternalSorter.Rec> sorted = primary.sorted();
+                ExternalSorter.Rec pending = null;
+                while (sorted.hasNext()) {
+                    ExternalSorter.Rec r = sorted.next();
+                    if (pending != null && !Arrays.equals(pending.key(), r.key())) {
+                        writeRow(pending, sink, indexes, idxSorters);
+                        rows++;
+                    }
+                    pending = r;
+                }
+                if (pending != null) {
+                    writeRow(pending, sink, indexes, idxSorters);
+                    rows++;
+                }
+                primaryFiles = sink.finish();
+            }
+
+            // 3) per-index sort + SSTs, in parallel
+            List<List<String>> idxFiles = new ArrayList<>();
+            long indexEntries = 0;
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, indexes.size())));
+            try {
+                List<Future<List<String>>> futures = new ArrayList<>();
+                for (int i = 0; i < indexes.size(); i++) {
+                    IndexDef<T> idx = indexes.get(i);
+                    ExternalSorter sorter = idxSorters.get(i);
+                    Path dir = runDir.resolve("idx-" + i + "-sst");
+                    futures.add(pool.submit(() -> writeIndex(idx, sorter, dir)));
+                }
+                for (Future<List<String>> f : futures) idxFiles.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("bulk load interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable c = e.getCause();
+                if (c instanceof RocksDBException re) throw re;
+                if (c instanceof IOException io) throw io;
+                if (c instanceof UniqueConstraintException u) throw u;
+                throw new RocksDaoException("index SST build failed", c);
+            } finally {
+                pool.shutdownNow();
+            }
+            for (ExternalSorter s : idxSorters) indexEntries += s.count();
+
+            // 4) ingest: indexes first, primary last
+            int files = primaryFiles.size();
+            try (IngestExternalFileOptions opts = new IngestExternalFileOptions().setMoveFiles(true)) {
+                for (int i = 0; i < indexes.size(); i++) {
+                    List<String> f = idxFiles.get(i);
+                    if (!f.isEmpty()) db.ingestExternalFile(idxCfList.get(i), f, opts);
+                    files += f.size();
+                }
+                if (!primaryFiles.isEmpty()) db.ingestExternalFile(def.primaryCf(), primaryFiles, opts);
+            }
+
+            int spilled = primary.spilledRuns();
+            for (ExternalSorter s : idxSorters) spilled += s.spilledRuns();
+            return new Result(rows, primary.count() - rows, indexEntries, files, spilled,
+                    Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            for (ExternalSorter s : idxSorters) s.close();
+            deleteRecursively(runDir);
+        }
+    }
+
+    private void requireEmpty(ColumnFamilyHandle cf, String name) {
+        try (RocksIterator it = db.newIterator(cf)) {
+            it.seekToFirst();
+            if (it.isValid()) throw new IllegalStateException("Bulk load target is not empty: " + name);
+        }
+    }
+
+    /** Row payload: value bytes plus the index value keys of the entity, so step 2 never decodes. */
+    private byte[] encodeRow(T e, List<IndexDef<T>> indexes) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bos);
+        byte[] v = def.valueCodec().encode(e);
+        out.writeInt(v.length);
+        out.write(v);
+        for (int i = 0; i < indexes.size(); i++) {
+            Set<ByteArrayKey> keys = new LinkedHashSet<>();
+            for (byte[] k : indexes.get(i).valueKeysOrEmpty(e)) if (k != null) keys.add(new ByteArrayKey(k));
+            out.writeInt(keys.size());
+            for (ByteArrayKey k : keys) {
+                out.writeInt(k.bytes().length);
+                out.write(k.bytes());
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    private void writeRow(ExternalSorter.Rec r, SstSink sink, List<IndexDef<T>> indexes, List<ExternalSorter> idxSorters)
+            throws IOException, RocksDBException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(r.value()));
+        byte[] v = in.readNBytes(in.readInt());
+        sink.put(r.key(), v);
+        for (int i = 0; i < idxSorters.size(); i++) {
+            IndexDef<T> idx = indexes.get(i);
+            int n = in.readInt();
+            for (int j = 0; j < n; j++) {
+                byte[] valueKey = in.readNBytes(in.readInt());
+                // the row's load order, so equal DIRECT entries sort by it
+                idxSorters.get(i).add(idx.entryKey(valueKey, r.key()), r.seq(), idx.entryValue(r.key()));
+            }
+        }
+    }
+
+    /**
+     * Equal keys are one entry; on a DIRECT index that means rows sharing a value, which fail when enforced
+     * and otherwise leave it to the row loaded last (the online rule: the last writer owns the entry).
+     */
+    private List<String> writeIndex(IndexDef<T> idx, ExternalSorter sorter, Path dir) throws IOException, RocksDBException {
+        try (SstSink sink = new SstSink(dir, targetFileSizeBytes)) {
+            Iterator<ExternalSorter.Rec> it = sorter.sorted();
+            ExternalSorter.Rec prev = null;
+            while (it.hasNext()) {
+                ExternalSorter.Rec r = it.next();
+                if (prev != null && !Arrays.equals(prev.key(), r.key())) sink.put(prev.key(), prev.value());
+                else if (prev != null && idx.enforceUnique()) throw new UniqueConstraintException(idx.name(), r.key());
+                prev = r;
+            }
+            if (prev != null) sink.put(prev.key(), prev.value());
+            return sink.finish();
+        }
+    }
+
+    /** Writes strictly increasing keys into SST files, rolling at the target size. */
+    private static final class SstSink implements AutoCloseable {
+        private final Path dir;
+        private final long targetFileSize;
+        private final Options options = new Options();
+        private final EnvOptions envOptions = new EnvOptions();
+        private final List<String> files = new ArrayList<>();
+        private SstFileWriter writer;
+
+        SstSink(Path dir, long targetFileSize) throws IOException {
+            this.dir = Files.createDirectories(dir);
+            this.targetFileSize = targetFileSize;
+        }
+
+        void put(byte[] key, byte[] value) throws RocksDBException {
+            if (writer == null) {
+                String f = dir.resolve(String.format("%06d.sst", files.size())).toString();
+                writer = new SstFileWriter(envOptions, options);
+                writer.open(f);
+                files.add(f);
+            }
+            writer.put(key, value);
+            if (writer.fileSize() >= targetFileSize) closeWriter();
+        }
+
+        List<String> finish() throws RocksDBException {
+            closeWriter();
+            return List.copyOf(files);
+        }
+
+        private void closeWriter() throws RocksDBException {
+            if (writer != null) {
+                try {
+                    writer.finish();
+                } finally {
+                    writer.close();
+                    writer = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (writer != null) writer.close();
+            envOptions.close();
+            options.close();
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -3,4 +3,11 @@ package org.github.dbjo.rdb;
 public interface Codec<T> {
     byte[] encode(T value);
     T decode(byte[] bytes);
+
+    /**
+     * True when decoding two encodings appended to each other yields the second merged over the first,
+     * as with protobuf: fields set in the second replace, repeated fields append. Such values can be
+     * patched with {@link RocksSchema.Merge#CONCAT} merges.
+     */
+    default boolean mergesByConcatenation() { return false; }
 }
@@ -2,6 +2,7 @@ package org.github.dbjo.rdb;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public interface Dao<T, K> extends AutoCloseable {
     Optional<T> findByKey(K key);
@@ -12,6 +13,19 @@ public interface Dao<T, K> extends AutoCloseable {
 
     boolean containsKey(K key);
 
+    /**
+     * Atomically replaces the value under {@code key} with {@code fn(current)}, if there is one; a null
+     * result deletes it. Returns the new value. {@code fn} may run more than once under contention,
+     * so it must be free of side effects.
+     */
+    Optional<T> update(K key, UnaryOperator<T> fn);
+
+    /**
+     * As {@link #update}, but also runs for an absent key, with null: returning a value inserts it,
+     * returning null leaves the key absent (or deletes it). Returns the new value or null.
+     */
+    T compute(K key, UnaryOperator<T> fn);
+
     // Bulk defaults (override if you want multiGet/multiPut)
     default Map<K, T> getAll(Collection<K> keys) {
         Map<K, T> out = new LinkedHashMap<>();
@@ -0,0 +1,170 @@
+package org.github.dbjo.rdb;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Joins a stream of rows from one DAO against another DAO, a batch of left rows at a time:
+ * <ul>
+ *   <li>{@link #byKey}: many-to-one through a foreign key. The batch's distinct keys are read with one
+ *       {@link Dao#getAll} (a multiGet on Rocks DAOs).</li>
+ *   <li>{@link #byIndex}: one-to-many through an index of the right DAO. The batch's distinct values go
+ *       into one {@link IndexPredicate.In} scan, and the matches are grouped back by their index values.</li>
+ * </ul>
+ * Output keeps the left input order. For {@code byIndex}, the matches of one left row come in index
+ * order. An inner join drops left rows without a match; {@link Builder#leftOuter()} emits them once with
+ * a null right side. A batch's matches are buffered, so a fan-out of F holds up to batchSize * F rows.
+ * Reads go through the right DAO's current session, so inside a transaction they see its writes.
+ */
+public final class DaoJoin<L, RK, R> {
+
+    /** One output row; {@code rightKey} and {@code right} are null for an unmatched left row of an outer join. */
+    public record Joined<LK, L, RK, R>(LK leftKey, L left, RK rightKey, R right) {}
+
+    /** Resolves the right rows of a batch: for each left row (same order), its matches. */
+    private interface Resolver<L, RK, R> {
+        List<List<Map.Entry<RK, R>>> resolve(List<L> lefts);
+    }
+
+    private final Resolver<L, RK, R> resolver;
+    private final int batchSize;
+    private final boolean leftOuter;
+    private final long limit;
+
+    private DaoJoin(Builder<L, RK, R> b) {
+        if (b.batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (b.limit < 0) throw new IllegalArgumentException("limit must be >= 0");
+        this.resolver = b.resolver;
+        this.batchSize = b.batchSize;
+        this.leftOuter = b.leftOuter;
+        this.limit = b.limit;
+    }
+
+    /** Many-to-one: each left row matches the right row under {@code foreignKey(left)}, if any (null matches nothing). */
+    public static <L, RK, R> Builder<L, RK, R> byKey(Function<? super L, ? extends RK> foreignKey, Dao<R, RK> right) {
+        Objects.requireNonNull(foreignKey);
+        Objects.requireNonNull(right);
+        return new Builder<>(lefts -> {
+            List<RK> fks = new ArrayList<>(lefts.size());
+            Set<RK> distinct = new LinkedHashSet<>();
+            for (L l : lefts) {
+                RK fk = foreignKey.apply(l);
+                fks.add(fk);
+                if (fk != null) distinct.add(fk);
+            }
+            Map<RK, R> found = distinct.isEmpty() ? Map.of() : right.getAll(distinct);
+            List<List<Map.Entry<RK, R>>> out = new ArrayList<>(lefts.size());
+            for (RK fk : fks) {
+                R r = (fk == null) ? null : found.get(fk);
+                out.add(r == null ? List.of() : List.of(new AbstractMap.SimpleImmutableEntry<>(fk, r)));
+            }
+            return out;
+        });
+    }
+
+    /**
+     * One-to-many: each left row matches the right rows whose {@code index} holds {@code valueKey(left)}
+     * (encoded with the index's codec; null matches nothing).
+     */
+    public static <L, RK, R> Builder<L, RK, R> byIndex(Function<? super L, byte[]> valueKey,
+                                                              IndexedRocksDao<R, RK> right, String index) {
+        Objects.requireNonNull(valueKey);
+        IndexDef<R> idx = right.index(index);
+        return new Builder<>(lefts -> {
+            List<byte[]> values = new ArrayList<>(lefts.size());
+            for (L l : lefts) values.add(valueKey.apply(l));
+
+            List<byte[]> nonNull = new ArrayList<>(values.size());
+            for (byte[] v : values) if (v != null) nonNull.add(v);
+            Map<ByteArrayKey, List<Map.Entry<RK, R>>> byValue = new HashMap<>();
+            if (!nonNull.isEmpty()) {
+                Query<RK> q = Query.<RK>builder().where(new IndexPredicate.In(index, nonNull)).build();
+                try (Stream<Map.Entry<RK, R>> st = right.stream(q)) {
+                    st.forEach(e -> {
+                        // a multi-valued index can match one row under several of the batch's values
+                        for (byte[] vk : idx.valueKeysOrEmpty(e.getValue())) {
+                            byValue.computeIfAbsent(new ByteArrayKey(vk), k -> new ArrayList<>()).add(e);
+                        }
+                    });
+                }
+            }
+            List<List<Map.Entry<RK, R>>> out = new ArrayList<>(lefts.size());
+            for (byte[] v : values) out.add(v == null ? List.of() : byValue.getOrDefault(new ByteArrayKey(v), List.of()));
+            return out;
+        });
+    }
+
+    public static final class Builder<L, RK, R> {
+        private final Resolver<L, RK, R> resolver;
+        private int batchSize = 256;
+        private boolean leftOuter;
+        private long limit = Long.MAX_VALUE;
+
+        private Builder(Resolver<L, RK, R> resolver) {
+            this.resolver = resolver;
+        }
+
+        /** Left rows resolved per multiGet or In scan (default 256). */
+        public Builder<L, RK, R> batchSize(int n) { this.batchSize = n; return this; }
+        /** Keeps unmatched left rows, with a null right side. */
+        public Builder<L, RK, R> leftOuter() { this.leftOuter = true; return this; }
+        /** Caps output rows; no more left rows are pulled than the remaining rows could need. */
+        public Builder<L, RK, R> limit(long n) { this.limit = n; return this; }
+        public DaoJoin<L, RK, R> build() { return new DaoJoin<>(this); }
+    }
+
+    /** Joins {@code left} (e.g. a DAO's {@code stream(query)}); closing the result closes {@code left}. */
+    public <LK> Stream<Joined<LK, L, RK, R>> apply(Stream<Map.Entry<LK, L>> left) {
+        Objects.requireNonNull(left);
+        JoinSpliterator<LK> sp = new JoinSpliterator<>(left.iterator());
+        return StreamSupport.stream(sp, false).onClose(left::close);
+    }
+
+    private final class JoinSpliterator<LK> extends Spliterators.AbstractSpliterator<Joined<LK, L, RK, R>> {
+        private final Iterator<Map.Entry<LK, L>> left;
+        private final ArrayDeque<Joined<LK, L, RK, R>> buffer = new ArrayDeque<>();
+        private long remaining = limit;
+
+        JoinSpliterator(Iterator<Map.Entry<LK, L>> left) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.left = left;
+        }
+
+        @Override
+        public boolean tryAdvance(java.util.function.Consumer<? super Joined<LK, L, RK, R>> action) {
+            if (remaining <= 0) return false;
+            while (buffer.isEmpty()) {
+                if (!fill()) return false;
+            }
+            remaining--;
+            action.accept(buffer.poll());
+            return true;
+        }
+
+        /** Resolves the next batch of left rows into the buffer; false once the left side is exhausted. */
+        private boolean fill() {
+            // never pull more left rows than rows still to emit; unmatched inner rows just cost another batch
+            int n = (int) Math.min(batchSize, remaining);
+            List<Map.Entry<LK, L>> batch = new ArrayList<>(n);
+            while (batch.size() < n && left.hasNext()) batch.add(left.next());
+            if (batch.isEmpty()) return false;
+
+            List<L> values = new ArrayList<>(batch.size());
+            for (Map.Entry<LK, L> e : batch) values.add(e.getValue());
+            List<List<Map.Entry<RK, R>>> matches = resolver.resolve(values);
+
+            for (int i = 0; i < batch.size() && buffer.size() < remaining; i++) {
+                Map.Entry<LK, L> l = batch.get(i);
+                List<Map.Entry<RK, R>> ms = matches.get(i);
+                if (ms.isEmpty()) {
+                    if (leftOuter) buffer.add(new Joined<>(l.getKey(), l.getValue(), null, null));
+                    continue;
+                }
+                for (Map.Entry<RK, R> r : ms) buffer.add(new Joined<>(l.getKey(), l.getValue(), r.getKey(), r.getValue()));
+            }
+            return true;
+        }
+    }
+}
@@ -1,29 +1,29 @@
 package org.github.dbjo.rdb;
 
 import org.rocksdb.ColumnFamilyHandle;
-import org.rocksdb.TransactionDB;
+import org.rocksdb.RocksDB;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
 public final class DaoRegistry implements AutoCloseable {
-    private final TransactionDB db; // optional, but handy
+    private final RocksDB db; // optional, but handy
     private final Map<String, ColumnFamilyHandle> cfByName;
     private final boolean closeDbOnClose;
 
-    public DaoRegistry(TransactionDB db, Map<String, ColumnFamilyHandle> cfByName) {
+    public DaoRegistry(RocksDB db, Map<String, ColumnFamilyHandle> cfByName) {
         this(db, cfByName, false);
     }
 
     /** If you want registry.close() to also close the DB, pass closeDbOnClose=true. */
-    public DaoRegistry(TransactionDB db, Map<String, ColumnFamilyHandle> cfByName, boolean closeDbOnClose) {
+    public DaoRegistry(RocksDB db, Map<String, ColumnFamilyHandle> cfByName, boolean closeDbOnClose) {
         this.db = Objects.requireNonNull(db, "db");
         this.cfByName = Map.copyOf(Objects.requireNonNull(cfByName, "cfByName"));
         this.closeDbOnClose = closeDbOnClose;
     }
 
-    public TransactionDB db() { return db; }
+    public RocksDB db() { return db; }
 
     public Map<String, ColumnFamilyHandle> cfByName() { return cfByName; }
 
@@ -2,13 +2,21 @@ package org.github.dbjo.rdb;
 
 import org.rocksdb.*;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.function.Consumer;
 
 final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCloseable {
     private static final byte SEP = 0;
+    // Primary rows fetched per multiGet by an In scan
+    private static final int IN_BATCH = 256;
 
     private final RocksSession session;
     private final ColumnFamilyHandle primaryCf;
@@ -16,16 +24,28 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
     private final KeyCodec<K> keyCodec;
     private final Codec<T> valueCodec;
 
-    private final RocksSession.IteratorHandle ih;
+    private final RocksSession.IteratorHandle ih; // null for a point lookup or a DIRECT In
     private final RocksIterator it;
     private final ReadOptions ro;
 
     private final boolean indexScan;
+    // Index entries are value -> pk (IndexDef.Layout.DIRECT) rather than value 0x00 pk -> empty
+    private final boolean directIndex;
     private final boolean descending;
 
     private int remaining;
     private boolean closed;
 
+    // Optional slow-query probe (null when no SlowQueryLog is configured)
+    private final SlowQueryLog.Probe probe;
+
+    // Raw iterator key of the last emitted entry (resume point for re-seeking scans)
+    private byte[] lastKey;
+
+    // Primary key and value of the current row (set by advanceRaw)
+    private byte[] rowKey;
+    private byte[] rowValue;
+
     // Bounds for iterator keys (raw key bytes)
     private final byte[] iterFrom;
     private final boolean iterFromInc;
@@ -35,6 +55,19 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
     // Extra: for Eq stop condition when iterTo == null
     private final byte[] eqPrefixOrNull;
 
+    // Eq on a DIRECT index: two point gets, no iterator (pointKey is cleared once looked up)
+    private final ColumnFamilyHandle pointCf;
+    private byte[] pointKey;
+
+    // In: values in scan order (null otherwise), the next one to visit, the composite prefix being
+    // walked, the resume point not yet applied, and fetched rows as {lastKey, pk, value}
+    private final byte[][] inValues;
+    private final ColumnFamilyHandle inCf;
+    private int inNext;
+    private byte[] inPrefix;
+    private byte[] inResume;
+    private final ArrayDeque<byte[][]> inRows = new ArrayDeque<>();
+
     // For index-range filtering
     private final byte[] idxValueFrom;
     private final boolean idxValueFromInc;
@@ -47,6 +80,19 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
                    KeyCodec<K> keyCodec,
                    Codec<T> valueCodec,
                    Query<K> q) {
+        this(session, primaryCf, indexCfs, Set.of(), keyCodec, valueCodec, q, null, null);
+    }
+
+    DaoSpliterator(RocksSession session,
+                   ColumnFamilyHandle primaryCf,
+                   Map<String, ColumnFamilyHandle> indexCfs,
+                   Set<String> directIndexes,
+                   KeyCodec<K> keyCodec,
+                   Codec<T> valueCodec,
+                   Query<K> q,
+                   SlowQueryLog.Probe probe,
+                   byte[] resumeAfter) {
+        this.probe = probe;
         this.session = Objects.requireNonNull(session);
         this.primaryCf = Objects.requireNonNull(primaryCf);
         this.indexCfs = Objects.requireNonNull(indexCfs);
@@ -59,12 +105,21 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
 
         ColumnFamilyHandle scanCf;
         byte[] tmpEqPrefix = null;
+        byte[] tmpPointKey = null;
+        byte[][] tmpInValues = null;
 
         if (!indexScan) {
             scanCf = primaryCf;
+            this.directIndex = false;
 
             var kr = q.keyRange().orElse(null);
-            if (kr != null) {
+            if (kr != null && kr.prefix()) {
+                byte[] prefix = keyCodec.encodeKey(kr.from());
+                this.iterFrom = prefix;
+                this.iterFromInc = true;
+                this.iterTo = ByteArrays.prefixEndExclusive(prefix);
+                this.iterToInc = false;
+            } else if (kr != null) {
                 this.iterFrom = (kr.from() != null) ? keyCodec.encodeKey(kr.from()) : null;
                 this.iterFromInc = kr.fromInclusive();
                 this.iterTo = (kr.to() != null) ? keyCodec.encodeKey(kr.to()) : null;
@@ -82,8 +137,43 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
             ColumnFamilyHandle idxCf = indexCfs.get(indexNameOf(p));
             if (idxCf == null) throw new IllegalArgumentException("Unknown index: " + indexNameOf(p));
             scanCf = idxCf;
+            this.directIndex = directIndexes.contains(indexNameOf(p));
+
+            if (directIndex && p instanceof IndexPredicate.Eq eq) {
+                tmpPointKey = eq.valueBytes();
+                this.iterFrom = null; this.iterFromInc = true;
+                this.iterTo = null;   this.iterToInc = true;
+
+                this.idxValueFrom = null; this.idxValueFromInc = true;
+                this.idxValueTo = null;   this.idxValueToInc = true;
+
+            } else if (directIndex && p instanceof IndexPredicate.Range r) {
+                // keys are the values themselves: bound the iterator like a primary scan
+                this.iterFrom = r.from(); this.iterFromInc = r.fromInclusive();
+                this.iterTo = r.to();     this.iterToInc = r.toInclusive();
+
+                this.idxValueFrom = null; this.idxValueFromInc = true;
+                this.idxValueTo = null;   this.idxValueToInc = true;
+
+            } else if (p instanceof IndexPredicate.In in) {
+                tmpInValues = inScanOrder(in.values(), directIndex, resumeAfter);
+                if (directIndex || tmpInValues.length == 0) {
+                    this.iterFrom = null;
+                    this.iterTo = null;
+                } else {
+                    byte[] first = ByteArrays.concat(tmpInValues[0], SEP);
+                    byte[] last = ByteArrays.concat(tmpInValues[tmpInValues.length - 1], SEP);
+                    if (descending) { byte[] t = first; first = last; last = t; }
+                    this.iterFrom = first;
+                    this.iterTo = ByteArrays.prefixEndExclusive(last);
+                }
+                this.iterFromInc = true;
+                this.iterToInc = false;
+
+                this.idxValueFrom = null; this.idxValueFromInc = true;
+                this.idxValueTo = null;   this.idxValueToInc = true;
 
-            if (p instanceof IndexPredicate.Eq eq) {
+            } else if (p instanceof IndexPredicate.Eq eq) {
                 byte[] prefix = ByteArrays.concat(eq.valueBytes(), SEP);
                 this.iterFrom = prefix;
                 this.iterFromInc = true;
@@ -113,26 +203,93 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
         }
 
         this.eqPrefixOrNull = tmpEqPrefix;
-
-        this.ih = session.openIterator(scanCf);
+        this.pointKey = tmpPointKey;
+        this.inValues = tmpInValues;
+
+        if (inValues != null) {
+            this.inCf = scanCf;
+            this.inResume = resumeAfter;
+            this.pointCf = null;
+            if (directIndex || inValues.length == 0) {
+                this.ih = null;
+                this.it = null;
+                this.ro = session.newReadOptions();
+            } else {
+                this.ih = session.openIterator(scanCf, iterFrom, upperBound(iterTo, iterToInc));
+                this.it = ih.it();
+                this.ro = ih.ro();
+            }
+            return;
+        }
+        this.inCf = null;
+
+        if (probe != null) probe.seeks++;
+        if (pointKey != null) {
+            this.pointCf = scanCf;
+            this.ih = null;
+            this.it = null;
+            this.ro = session.newReadOptions();
+            if (resumeAfter != null) pointKey = null; // the one entry was already emitted
+            return;
+        }
+        this.pointCf = null;
+        this.ih = session.openIterator(scanCf, iterFrom, upperBound(iterTo, iterToInc));
         this.it = ih.it();
         this.ro = ih.ro();
 
-        if (!indexScan) seekPrimary();
+        if (resumeAfter != null) seekPast(resumeAfter);
+        else if (!indexScan || directIndex) seekPrimary();
         else seekIndex();
     }
 
+    /** Exclusive iterator upper bound for {@code to}; the smallest key above it when inclusive. */
+    private static byte[] upperBound(byte[] to, boolean inclusive) {
+        if (to == null) return null;
+        return inclusive ? ByteArrays.concat(to, (byte) 0) : to;
+    }
+
+    /** Raw key of the last entry handed to the consumer, or null if none yet. */
+    byte[] lastKey() { return lastKey; }
+
+    /** Positions on the first entry strictly after {@code rawKey} in scan order; bounds still apply. */
+    private void seekPast(byte[] rawKey) {
+        if (!descending) it.seek(rawKey);
+        else it.seekForPrev(rawKey);
+        if (it.isValid() && ByteArrays.compare(it.key(), rawKey) == 0) step();
+    }
+
     private static String indexNameOf(IndexPredicate p) {
-        if (p instanceof IndexPredicate.Eq eq) return eq.indexName();
-        if (p instanceof IndexPredicate.Range r) return r.indexName();
-        throw new IllegalArgumentException("Unknown predicate: " + p);
+        return p.indexName();
+    }
+
+    /**
+     * Sorted, deduped In values in scan order, without those wholly at or before {@code resumeAfter}
+     * (an index key: the value itself on a DIRECT index, value 0x00 pk otherwise).
+     */
+    private byte[][] inScanOrder(List<byte[]> values, boolean direct, byte[] resumeAfter) {
+        List<byte[]> sorted = new ArrayList<>(values);
+        sorted.sort(ByteArrays::compare);
+        List<byte[]> out = new ArrayList<>(sorted.size());
+        for (byte[] v : sorted) {
+            if (!out.isEmpty() && ByteArrays.compare(out.get(out.size() - 1), v) == 0) continue;
+            if (resumeAfter != null) {
+                // a value's composite entries lie in [v 0x00, v 0x01)
+                byte[] lo = direct ? v : ByteArrays.concat(v, SEP);
+                byte[] hi = direct ? v : ByteArrays.prefixEndExclusive(lo);
+                boolean pending = descending ? ByteArrays.compare(lo, resumeAfter) < 0 : ByteArrays.compare(hi, resumeAfter) > 0;
+                if (!pending) continue;
+            }
+            out.add(v);
+        }
+        if (descending) Collections.reverse(out);
+        return out.toArray(new byte[0][]);
     }
 
     private void seekPrimary() {
         if (!descending) {
             if (iterFrom != null) {
                 it.seek(iterFrom);
-                if (!iterFromInc && it.isValid() && ByteArrays.compare(it.key(), iterFrom) == 0) it.next();
+                if (!iterFromInc && it.isValid() && ByteArrays.compare(it.key(), iterFrom) == 0) step();
             } else {
                 it.seekToFirst();
             }
@@ -141,8 +298,8 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
                 it.seek(iterTo);
                 if (!it.isValid()) it.seekToLast();
                 else {
-                    if (!iterToInc && ByteArrays.compare(it.key(), iterTo) == 0) it.prev();
-                    else if (ByteArrays.compare(it.key(), iterTo) > 0) it.prev();
+                    if (!iterToInc && ByteArrays.compare(it.key(), iterTo) == 0) step();
+                    else if (ByteArrays.compare(it.key(), iterTo) > 0) step();
                 }
             } else {
                 it.seekToLast();
@@ -157,7 +314,7 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
             if (iterTo != null) {
                 it.seek(iterTo);
                 if (!it.isValid()) it.seekToLast();
-                else it.prev();
+                else step();
             } else {
                 it.seekToLast();
             }
@@ -166,11 +323,34 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
 
     @Override
     public boolean tryAdvance(Consumer<? super Map.Entry<K, T>> action) {
+        if (!advanceRaw()) return false;
+        action.accept(decode(rowKey, rowValue));
+        return true;
+    }
+
+    /** Primary key bytes of the row found by the last successful {@link #advanceRaw()}. */
+    byte[] rowKey() { return rowKey; }
+
+    /** Value bytes of the row found by the last successful {@link #advanceRaw()}. */
+    byte[] rowValue() { return rowValue; }
+
+    Map.Entry<K, T> decode(byte[] pkBytes, byte[] valueBytes) {
+        return Map.entry(keyCodec.decodeKey(pkBytes), valueCodec.decode(valueBytes));
+    }
+
+    /**
+     * Moves to the next row that matches the query without decoding it; the row's raw primary key
+     * and value are then available from {@link #rowKey()} and {@link #rowValue()}.
+     */
+    boolean advanceRaw() {
         if (closed) return false;
+        if (inValues != null) return advanceIn();
+        if (pointCf != null) return advancePoint();
 
         while (true) {
             if (remaining <= 0) { close(); return false; }
             if (!it.isValid())  { close(); return false; }
+            if (probe != null) probe.entriesScanned++;
 
             // bounds
             if (!descending) {
@@ -186,61 +366,73 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
             }
 
             if (!indexScan) {
-                K k = keyCodec.decodeKey(it.key());
-                T v = valueCodec.decode(it.value());
-                action.accept(Map.entry(k, v));
+                byte[] kb = it.key();
+                rowKey = kb;
+                rowValue = it.value();
+                lastKey = kb;
 
-                if (!descending) it.next(); else it.prev();
+                step();
                 remaining--;
+                if (probe != null) probe.rowsReturned++;
                 return true;
 
             } else {
-                // if no iterTo (prefixEndExclusive returned null), stop when prefix no longer matches
-                if (eqPrefixOrNull != null && !startsWith(it.key(), eqPrefixOrNull)) {
-                    close();
-                    return false;
-                }
-
                 byte[] idxKey = it.key();
-                int sepPos = ByteArrays.indexOf(idxKey, SEP);
-                if (sepPos <= 0 || sepPos == idxKey.length - 1) {
-                    if (!descending) it.next(); else it.prev();
-                    continue;
-                }
-
-                byte[] valuePart = java.util.Arrays.copyOfRange(idxKey, 0, sepPos);
+                byte[] pkBytes;
+
+                if (directIndex) {
+                    pkBytes = it.value();
+                } else {
+                    // if no iterTo (prefixEndExclusive returned null), stop when prefix no longer matches
+                    if (eqPrefixOrNull != null && !startsWith(idxKey, eqPrefixOrNull)) {
+                        close();
+                        return false;
+                    }
 
-                if (idxValueFrom != null) {
-                    int cFrom = ByteArrays.compare(valuePart, idxValueFrom);
-                    if (cFrom < 0 || (cFrom == 0 && !idxValueFromInc)) {
-                        if (!descending) it.next(); else it.prev();
+                    int sepPos = ByteArrays.indexOf(idxKey, SEP);
+                    if (sepPos <= 0 || sepPos == idxKey.length - 1) {
+                        skipIndexEntry();
                         continue;
                     }
-                }
-                if (idxValueTo != null) {
-                    int cTo = ByteArrays.compare(valuePart, idxValueTo);
-                    if (cTo > 0 || (cTo == 0 && !idxValueToInc)) {
-                        if (!descending) { close(); return false; }
-                        it.prev();
-                        continue;
+
+                    byte[] valuePart = java.util.Arrays.copyOfRange(idxKey, 0, sepPos);
+
+                    if (idxValueFrom != null) {
+                        int cFrom = ByteArrays.compare(valuePart, idxValueFrom);
+                        if (cFrom < 0 || (cFrom == 0 && !idxValueFromInc)) {
+                            skipIndexEntry();
+                            continue;
+                        }
+                    }
+                    if (idxValueTo != null) {
+                        int cTo = ByteArrays.compare(valuePart, idxValueTo);
+                        if (cTo > 0 || (cTo == 0 && !idxValueToInc)) {
+                            if (!descending) { close(); return false; }
+                            skipIndexEntry();
+                            continue;
+                        }
                     }
-                }
 
-                byte[] pkBytes = java.util.Arrays.copyOfRange(idxKey, sepPos + 1, idxKey.length);
+                    pkBytes = java.util.Arrays.copyOfRange(idxKey, sepPos + 1, idxKey.length);
+                }
 
                 try {
+                    if (probe != null) probe.primaryLookups++;
                     byte[] vb = session.get(primaryCf, ro, pkBytes);
                     if (vb == null) {
-                        if (!descending) it.next(); else it.prev();
+                        // stale index entry: primary row is gone
+                        if (probe != null) probe.staleIndexEntries++;
+                        step();
                         continue;
                     }
 
-                    K k = keyCodec.decodeKey(pkBytes);
-                    T v = valueCodec.decode(vb);
-                    action.accept(Map.entry(k, v));
+                    rowKey = pkBytes;
+                    rowValue = vb;
+                    lastKey = idxKey;
 
-                    if (!descending) it.next(); else it.prev();
+                    step();
                     remaining--;
+                    if (probe != null) probe.rowsReturned++;
                     return true;
 
                 } catch (RocksDBException e) {
@@ -250,6 +442,146 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
         }
     }
 
+    /** The single lookup of an Eq on a DIRECT index: value -> pk, then pk -> row. */
+    private boolean advancePoint() {
+        byte[] key = pointKey;
+        pointKey = null;
+        if (key == null || remaining <= 0) { close(); return false; }
+        try {
+            if (probe != null) probe.entriesScanned++;
+            byte[] pkBytes = session.get(pointCf, ro, key);
+            if (pkBytes == null) { close(); return false; }
+
+            if (probe != null) probe.primaryLookups++;
+            byte[] vb = session.get(primaryCf, ro, pkBytes);
+            if (vb == null) {
+                if (probe != null) probe.staleIndexEntries++;
+                close();
+                return false;
+            }
+
+            rowKey = pkBytes;
+            rowValue = vb;
+            lastKey = key;
+            remaining--;
+            if (probe != null) probe.rowsReturned++;
+            return true;
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("index lookup failed", e);
+        }
+    }
+
+    /** Next row of an In scan, refilling the row buffer one primary multiGet at a time. */
+    private boolean advanceIn() {
+        while (true) {
+            if (remaining <= 0) { close(); return false; }
+            byte[][] row = inRows.poll();
+            if (row == null) {
+                if (!fillIn()) { close(); return false; }
+                continue;
+            }
+            lastKey = row[0];
+            rowKey = row[1];
+            rowValue = row[2];
+            remaining--;
+            if (probe != null) probe.rowsReturned++;
+            return true;
+        }
+    }
+
+    /** Collects up to a batch of index entries, then reads their rows with one multiGet; false once the values run out. */
+    private boolean fillIn() {
+        int n = Math.min(remaining, IN_BATCH);
+        List<byte[]> entryKeys = new ArrayList<>(n);
+        List<byte[]> pks = new ArrayList<>(n);
+        try {
+            if (directIndex) collectInDirect(n, entryKeys, pks);
+            else collectInComposite(n, entryKeys, pks);
+            if (pks.isEmpty()) return false;
+
+            if (probe != null) probe.primaryLookups += pks.size();
+            List<byte[]> rows = session.multiGet(primaryCf, ro, pks);
+            for (int i = 0; i < pks.size(); i++) {
+                byte[] vb = rows.get(i);
+                if (vb == null) {
+                    // stale index entry: primary row is gone
+                    if (probe != null) probe.staleIndexEntries++;
+                    continue;
+                }
+                inRows.add(new byte[][]{entryKeys.get(i), pks.get(i), vb});
+            }
+            return true;
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("index-driven fetch failed", e);
+        }
+    }
+
+    /** DIRECT: the next values' pks by multiGet on the index CF; missing values are skipped. */
+    private void collectInDirect(int n, List<byte[]> entryKeys, List<byte[]> pks) throws RocksDBException {
+        while (pks.isEmpty() && inNext < inValues.length) {
+            int end = Math.min(inValues.length, inNext + n);
+            List<byte[]> keys = Arrays.asList(inValues).subList(inNext, end);
+            inNext = end;
+            if (probe != null) { probe.seeks++; probe.entriesScanned += keys.size(); }
+            List<byte[]> found = session.multiGet(inCf, ro, keys);
+            for (int i = 0; i < keys.size(); i++) {
+                if (found.get(i) == null) continue;
+                entryKeys.add(keys.get(i));
+                pks.add(found.get(i));
+            }
+        }
+    }
+
+    /** Composite: walks value 0x00 pk entries under each value's prefix, seeking from one value to the next. */
+    private void collectInComposite(int n, List<byte[]> entryKeys, List<byte[]> pks) {
+        while (pks.size() < n) {
+            if (inPrefix == null) {
+                if (inNext == inValues.length) return;
+                inPrefix = ByteArrays.concat(inValues[inNext++], SEP);
+                seekInPrefix();
+            }
+            if (!it.isValid() || !startsWith(it.key(), inPrefix)) {
+                inPrefix = null;
+                continue;
+            }
+            if (probe != null) probe.entriesScanned++;
+            byte[] k = it.key();
+            if (k.length == inPrefix.length) { skipIndexEntry(); continue; }
+            entryKeys.add(k);
+            pks.add(Arrays.copyOfRange(k, inPrefix.length, k.length));
+            step();
+        }
+    }
+
+    /** Positions on the first entry of {@link #inPrefix} in scan order, past the resume point if it falls inside. */
+    private void seekInPrefix() {
+        if (probe != null) probe.seeks++;
+        byte[] resume = inResume;
+        inResume = null;
+        if (!descending) {
+            if (resume != null && ByteArrays.compare(resume, inPrefix) >= 0) seekPast(resume);
+            else it.seek(inPrefix);
+        } else {
+            byte[] end = ByteArrays.prefixEndExclusive(inPrefix);
+            if (resume != null && ByteArrays.compare(resume, end) < 0) {
+                seekPast(resume);
+            } else {
+                it.seekForPrev(end);
+                if (it.isValid() && ByteArrays.compare(it.key(), end) == 0) step();
+            }
+        }
+    }
+
+    private void step() {
+        if (!descending) it.next(); else it.prev();
+        if (probe != null) probe.iteratorSteps++;
+    }
+
+    private void skipIndexEntry() {
+        if (probe != null) probe.indexEntriesSkipped++;
+        step();
+    }
+
     private static boolean startsWith(byte[] a, byte[] prefix) {
         if (a.length < prefix.length) return false;
         for (int i = 0; i < prefix.length; i++) if (a[i] != prefix[i]) return false;
@@ -264,7 +596,9 @@ final class DaoSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCl
     public void close() {
         if (!closed) {
             closed = true;
-            ih.close();
+            if (ih != null) ih.close();
+            else ro.close();
+            if (probe != null) probe.finish();
         }
     }
 }
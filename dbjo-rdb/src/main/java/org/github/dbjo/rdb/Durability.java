@@ -0,0 +1,76 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.WriteOptions;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+
+import java.util.function.Supplier;
+
+/**
+ * How far a write has to get before it returns (or its transaction commits):
+ * <ul>
+ *   <li>{@code SYNC}: WAL written and fsynced; survives a machine crash;</li>
+ *   <li>{@code WAL}: WAL written, not synced; survives a process crash (the RocksDB default);</li>
+ *   <li>{@code NO_WAL}: memtable only; lost on any crash before a flush. For data that can be rebuilt.</li>
+ * </ul>
+ * Chosen, highest precedence first: by {@link #call} / {@link #run} for work on the calling thread; for a
+ * Spring transaction by its label ({@link #SYNC_LABEL} etc.) or else the manager's default; for an
+ * auto-commit DAO write by the DAO's {@link AbstractRocksDao#setDurability default}; else {@code WAL}.
+ */
+public enum Durability {
+    SYNC, WAL, NO_WAL;
+
+    public static final String SYNC_LABEL = "rocks:durability=SYNC";
+    public static final String WAL_LABEL = "rocks:durability=WAL";
+    public static final String NO_WAL_LABEL = "rocks:durability=NO_WAL";
+
+    private static final ThreadLocal<Durability> SCOPED = new ThreadLocal<>();
+
+    /** Runs {@code work} with every write (or transaction begun) on this thread at this level. */
+    public <R> R call(Supplier<R> work) {
+        Durability prev = SCOPED.get();
+        SCOPED.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (prev == null) SCOPED.remove(); else SCOPED.set(prev);
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> { work.run(); return null; });
+    }
+
+    /** The level set by an enclosing {@link #call}, else {@code fallback} (which may be null). */
+    static Durability scopedOr(Durability fallback) {
+        Durability d = SCOPED.get();
+        return (d != null) ? d : fallback;
+    }
+
+    /** The level a transaction asks for through its labels, or null. */
+    static Durability ofLabels(TransactionDefinition definition) {
+        if (!(definition instanceof TransactionAttribute ta)) return null;
+        for (Durability d : values()) {
+            if (ta.getLabels().contains("rocks:durability=" + d.name())) return d;
+        }
+        return null;
+    }
+
+    /** The stronger of two levels; null counts as unset. */
+    static Durability stronger(Durability a, Durability b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return (a.ordinal() <= b.ordinal()) ? a : b;
+    }
+
+    /** Caller closes. */
+    WriteOptions newWriteOptions() {
+        WriteOptions wo = new WriteOptions();
+        switch (this) {
+            case SYNC -> wo.setSync(true);
+            case WAL -> { }
+            case NO_WAL -> wo.setDisableWAL(true);
+        }
+        return wo;
+    }
+}
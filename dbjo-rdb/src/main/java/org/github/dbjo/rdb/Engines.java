@@ -0,0 +1,24 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+/** What differs between the {@link RocksProps.Engine} modes, for code that only holds the {@code RocksDB}. */
+final class Engines {
+    private Engines() {}
+
+    static RocksProps.Engine of(RocksDB db) {
+        if (db instanceof TransactionDB) return RocksProps.Engine.PESSIMISTIC;
+        if (db instanceof OptimisticTransactionDB) return RocksProps.Engine.OPTIMISTIC;
+        return RocksProps.Engine.PLAIN;
+    }
+
+    /**
+     * A {@code Transaction}: locking on a TransactionDB, validated at commit on an OptimisticTransactionDB.
+     * A plain RocksDB has neither, so callers needing getForUpdate semantics cannot run on it.
+     */
+    static Transaction beginTransaction(RocksDB db, WriteOptions wo) {
+        if (db instanceof TransactionDB t) return t.beginTransaction(wo);
+        if (db instanceof OptimisticTransactionDB o) return o.beginTransaction(wo);
+        throw new IllegalStateException("Needs a transactional engine (PESSIMISTIC or OPTIMISTIC), not PLAIN");
+    }
+}
@@ -0,0 +1,153 @@
+package org.github.dbjo.rdb;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sorts (key, value) records by unsigned key bytes, then by insertion order, spilling sorted runs to
+ * {@code workDir} whenever the in-memory buffer exceeds {@code memoryBudgetBytes}. Not thread-safe.
+ */
+final class ExternalSorter implements AutoCloseable {
+
+    /** A sorted record; {@code seq} is the insertion order, so later duplicates sort after earlier ones. */
+    record Rec(byte[] key, long seq, byte[] value) {}
+
+    private static final Comparator<Rec> ORDER = (a, b) -> {
+        int c = ByteArrays.compare(a.key(), b.key());
+        return (c != 0) ? c : Long.compare(a.seq(), b.seq());
+    };
+
+    private static final long RECORD_OVERHEAD = 64;
+
+    private final Path workDir;
+    private final long memoryBudgetBytes;
+    private final List<Path> runs = new ArrayList<>();
+    private final List<DataInputStream> openReaders = new ArrayList<>();
+
+    private List<Rec> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private long seq;
+    private long count;
+
+    ExternalSorter(Path workDir, long memoryBudgetBytes) {
+        this.workDir = Objects.requireNonNull(workDir);
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    void add(byte[] key, byte[] value) throws IOException {
+        add(key, seq++, value);
+    }
+
+    /** As {@link #add(byte[], byte[])}, with the caller's {@code seq} ordering equal keys. */
+    void add(byte[] key, long seq, byte[] value) throws IOException {
+        buffer.add(new Rec(key, seq, value));
+        bufferedBytes += key.length + value.length + RECORD_OVERHEAD;
+        count++;
+        if (bufferedBytes >= memoryBudgetBytes) spill();
+    }
+
+    long count() { return count; }
+
+    int spilledRuns() { return runs.size(); }
+
+    /** Merges all runs; call once, after the last {@link #add}. */
+    Iterator<Rec> sorted() throws IOException {
+        buffer.sort(ORDER);
+        PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> ORDER.compare(a.head, b.head));
+
+        Cursor mem = new Cursor(buffer.iterator());
+        if (mem.advance()) heap.add(mem);
+
+        for (Path run : runs) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            openReaders.add(in);
+            Cursor c = new Cursor(runIterator(in));
+            if (c.advance()) heap.add(c);
+        }
+
+        return new Iterator<>() {
+            @Override public boolean hasNext() { return !heap.isEmpty(); }
+
+            @Override public Rec next() {
+                Cursor c = heap.poll();
+                if (c == null) throw new NoSuchElementException();
+                Rec r = c.head;
+                if (c.advance()) heap.add(c);
+                return r;
+            }
+        };
+    }
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) return;
+        buffer.sort(ORDER);
+        Files.createDirectories(workDir);
+        Path run = Files.createTempFile(workDir, "dbjo-sort-", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for (Rec r : buffer) {
+                out.writeInt(r.key().length);
+                out.write(r.key());
+                out.writeLong(r.seq());
+                out.writeInt(r.value().length);
+                out.write(r.value());
+            }
+        }
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+
+    private static Iterator<Rec> runIterator(DataInputStream in) {
+        return new Iterator<>() {
+            private Rec next = read();
+
+            private Rec read() {
+                try {
+                    int kl;
+                    try {
+                        kl = in.readInt();
+                    } catch (EOFException eof) {
+                        return null;
+                    }
+                    byte[] k = in.readNBytes(kl);
+                    long s = in.readLong();
+                    byte[] v = in.readNBytes(in.readInt());
+                    return new Rec(k, s, v);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override public boolean hasNext() { return next != null; }
+
+            @Override public Rec next() {
+                if (next == null) throw new NoSuchElementException();
+                Rec r = next;
+                next = read();
+                return r;
+            }
+        };
+    }
+
+    private static final class Cursor {
+        private final Iterator<Rec> it;
+        private Rec head;
+
+        Cursor(Iterator<Rec> it) { this.it = it; }
+
+        boolean advance() {
+            head = it.hasNext() ? it.next() : null;
+            return head != null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataInputStream in : openReaders) in.close();
+        for (Path run : runs) Files.deleteIfExists(run);
+        runs.clear();
+        buffer = new ArrayList<>();
+    }
+}
@@ -0,0 +1,139 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Group commit for auto-commit writes: batches submitted concurrently by many threads are merged into
+ * one {@code WriteBatch} and written (and, for {@link Durability#SYNC}, fsynced) once.
+ * <p>
+ * Leader/follower: a writer finding no write in progress leads. It optionally waits {@code maxDelay}
+ * for company, takes up to {@code maxGroup} queued batches, writes them, and hands the lead to the next
+ * queued writer. Writers arriving meanwhile wait for a later group. A group is written with the
+ * strongest durability among its members, and commits or fails as one: every member sees the same error.
+ */
+public final class GroupCommitter {
+
+    private static final Object DONE = new Object();
+    private static final Object LEAD = new Object();
+
+    private static final class Pending {
+        final RocksWriteBatch batch;
+        private Object outcome; // DONE, LEAD or a Throwable
+
+        Pending(RocksWriteBatch batch) { this.batch = batch; }
+
+        synchronized void complete(Object o) {
+            outcome = o;
+            notifyAll();
+        }
+
+        synchronized Object await() {
+            boolean interrupted = false;
+            while (outcome == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the write is already queued; it must be waited out
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return outcome;
+        }
+    }
+
+    private final RocksDB db;
+    private final long maxDelayNanos;
+    private final int maxGroup;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean leading;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+
+    GroupCommitter(RocksDB db, Duration maxDelay, int maxGroup) {
+        if (maxGroup <= 0) throw new IllegalArgumentException("maxGroup must be > 0");
+        this.db = Objects.requireNonNull(db);
+        this.maxDelayNanos = Objects.requireNonNull(maxDelay).toNanos();
+        this.maxGroup = maxGroup;
+    }
+
+    /** Writes {@code batch} as part of a group; returns once the group is durable. */
+    void write(RocksWriteBatch batch) throws RocksDBException {
+        Pending me = new Pending(batch);
+        boolean lead;
+        synchronized (lock) {
+            queue.add(me);
+            lead = !leading;
+            if (lead) leading = true;
+        }
+        writes.increment();
+
+        Object outcome = lead ? LEAD : me.await();
+        if (outcome == LEAD) outcome = leadOneGroup(me);
+        if (outcome == DONE) return;
+        if (outcome instanceof RocksDBException e) throw e;
+        if (outcome instanceof RuntimeException e) throw e;
+        if (outcome instanceof Error e) throw e;
+        throw new IllegalStateException("Unexpected group commit outcome: " + outcome);
+    }
+
+    /** Writes the group starting at {@code me} (the queue head), completes its members, passes on the lead. */
+    private Object leadOneGroup(Pending me) {
+        if (maxDelayNanos > 0) {
+            boolean full;
+            synchronized (lock) { full = queue.size() >= maxGroup; }
+            if (!full) LockSupport.parkNanos(maxDelayNanos);
+        }
+
+        List<Pending> group = new ArrayList<>();
+        synchronized (lock) {
+            while (group.size() < maxGroup && !queue.isEmpty()) group.add(queue.poll());
+        }
+
+        Object outcome = DONE;
+        Durability durability = null;
+        for (Pending p : group) durability = Durability.stronger(durability, p.batch.durability());
+        try (WriteOptions wo = (durability == null ? Durability.WAL : durability).newWriteOptions();
+             WriteBatch wb = new WriteBatch()) {
+            for (Pending p : group) {
+                for (var op : p.batch.ops()) {
+                    if (op instanceof RocksWriteBatch.Put put) wb.put(put.cf(), put.key(), put.value());
+                    else if (op instanceof RocksWriteBatch.Delete d) wb.delete(d.cf(), d.key());
+                    else if (op instanceof RocksWriteBatch.Merge m) wb.merge(m.cf(), m.key(), m.operand());
+                }
+            }
+            db.write(wo, wb);
+            groups.increment();
+        } catch (RocksDBException | RuntimeException | Error e) {
+            outcome = e;
+        }
+
+        for (Pending p : group) if (p != me) p.complete(outcome);
+
+        synchronized (lock) {
+            Pending next = queue.peek();
+            if (next == null) leading = false;
+            else next.complete(LEAD);
+        }
+        return outcome;
+    }
+
+    /** Batches submitted. */
+    public long writes() { return writes.sum(); }
+
+    /** Merged writes issued; writes() / groups() is the achieved grouping factor. */
+    public long groups() { return groups.sum(); }
+}
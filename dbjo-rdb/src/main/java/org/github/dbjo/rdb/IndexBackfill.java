@@ -0,0 +1,312 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Online build of one secondary index over a populated primary CF.
+ * <p>
+ * Rollout: call {@link IndexCatalog#markBuilding} (or let {@link #run} do it), deploy DAOs whose
+ * {@link EntityDef} declares the new index and that have the catalog attached, then run the backfill.
+ * From then on writers maintain the index for the rows they touch, and index queries fail fast until
+ * the backfill marks the index ready.
+ * <p>
+ * The primary key space is split at SST file boundaries into ranges that workers scan in parallel from
+ * one snapshot. The snapshot only enumerates keys: each batch re-reads its rows with
+ * {@code multiGetForUpdate} in a transaction and indexes the current values. So an entry is never
+ * derived from a value that a concurrent writer has already replaced, and writers to those rows wait
+ * for the batch to commit. Rows inserted after the snapshot are indexed by their writers.
+ * <p>
+ * Progress is saved to the catalog per range, so a stopped or crashed backfill resumes where it left
+ * off. Re-indexing a row is idempotent, so resuming from a slightly older checkpoint is harmless.
+ * <p>
+ * On a {@link IndexDef.Layout#DIRECT} index a value already held by another row is left to that row;
+ * if the index enforces uniqueness the backfill fails instead, leaving the index building.
+ */
+public final class IndexBackfill<T, K> {
+
+    /** Progress so far; {@code rangesDone == ranges} once every range is scanned. */
+    public record Progress(String index, long rowsScanned, long entriesWritten, int rangesDone, int ranges,
+                           Duration elapsed) {}
+
+    /** What a run did; {@code complete} is false when it was stopped before the end. */
+    public record Result(String index, long rowsScanned, long entriesWritten, int ranges, boolean complete,
+                         Duration elapsed) {}
+
+    private static final System.Logger LOG = System.getLogger(IndexBackfill.class.getName());
+
+    private final RocksDB db;
+    private final EntityDef<T, K> def;
+    private final IndexDef<T> index;
+    private final ColumnFamilyHandle indexCf;
+    private final IndexCatalog catalog;
+    private final int parallelism;
+    private final int splits;
+    private final int batchSize;
+    private final long maxRowsPerSecond;
+    private final long checkpointNanos;
+    private final Consumer<Progress> progress;
+
+    private volatile boolean stopped;
+
+    private IndexBackfill(Builder<T, K> b) {
+        this.db = Objects.requireNonNull(b.db, "db");
+        this.def = b.ent.def();
+        this.index = def.indexes().stream()
+                .filter(i -> i.name().equals(b.indexName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Index not declared on " + def.name() + ": " + b.indexName));
+        this.indexCf = b.ent.indexCf(b.indexName);
+        this.catalog = Objects.requireNonNull(b.catalog, "catalog");
+        this.parallelism = Math.max(1, b.parallelism);
+        this.splits = Math.max(1, (b.splits > 0) ? b.splits : parallelism * 4);
+        this.batchSize = Math.max(1, b.batchSize);
+        this.maxRowsPerSecond = b.maxRowsPerSecond;
+        this.checkpointNanos = b.checkpointEvery.toNanos();
+        this.progress = Objects.requireNonNull(b.progress, "progress");
+    }
+
+    /** {@code db} must be a transactional engine (PESSIMISTIC or OPTIMISTIC): batches lock the rows they index. */
+    public static <T, K> Builder<T, K> builder(RocksDB db, ResolvedEntityDef<T, K> ent, String indexName,
+                                               IndexCatalog catalog) {
+        return new Builder<>(db, Objects.requireNonNull(ent, "ent"), Objects.requireNonNull(indexName, "indexName"), catalog);
+    }
+
+    public static final class Builder<T, K> {
+        private final RocksDB db;
+        private final ResolvedEntityDef<T, K> ent;
+        private final String indexName;
+        private final IndexCatalog catalog;
+        private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int splits;
+        private int batchSize = 1_000;
+        private long maxRowsPerSecond;
+        private Duration checkpointEvery = Duration.ofSeconds(5);
+        private Consumer<Progress> progress = p -> LOG.log(System.Logger.Level.INFO, p.toString());
+
+        private Builder(RocksDB db, ResolvedEntityDef<T, K> ent, String indexName, IndexCatalog catalog) {
+            this.db = db;
+            this.ent = ent;
+            this.indexName = indexName;
+            this.catalog = catalog;
+        }
+
+        public Builder<T, K> parallelism(int n) { this.parallelism = n; return this; }
+        /** Key ranges for a fresh build (default 4 per worker); a resumed build keeps its saved ranges. */
+        public Builder<T, K> splits(int n) { this.splits = n; return this; }
+        /** Rows locked, re-read and indexed per transaction. */
+        public Builder<T, K> batchSize(int n) { this.batchSize = n; return this; }
+        /** Cap across all workers; 0 means unthrottled. */
+        public Builder<T, K> maxRowsPerSecond(long n) { this.maxRowsPerSecond = n; return this; }
+        /** How often range progress is saved (and reported). */
+        public Builder<T, K> checkpointEvery(Duration d) { this.checkpointEvery = d; return this; }
+        public Builder<T, K> progress(Consumer<Progress> c) { this.progress = c; return this; }
+        public IndexBackfill<T, K> build() { return new IndexBackfill<>(this); }
+    }
+
+    /** Asks a running backfill to stop after its current batches; progress is saved. */
+    public void stop() { stopped = true; }
+
+    /**
+     * Builds the index, resuming saved progress if any, and marks it ready when every range is done.
+     * Returns early with {@code complete == false} after {@link #stop()} or an interrupt.
+     */
+    public Result run() throws RocksDBException {
+        long start = System.nanoTime();
+        String name = index.name();
+        stopped = false;
+        catalog.markBuilding(name);
+
+        List<IndexCatalog.Range> saved = catalog.ranges(name);
+        List<IndexCatalog.Range> ranges = saved.isEmpty() ? split() : saved;
+        if (saved.isEmpty()) catalog.saveRanges(name, ranges);
+
+        AtomicReferenceArray<IndexCatalog.Range> state = new AtomicReferenceArray<>(ranges.toArray(IndexCatalog.Range[]::new));
+        LongAdder scanned = new LongAdder();
+        LongAdder written = new LongAdder();
+        Throttle throttle = new Throttle(maxRowsPerSecond);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, ranges.size()), r -> {
+            Thread t = new Thread(r, "dbjo-backfill-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        Snapshot snapshot = db.getSnapshot();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dbjo-backfill-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ticker.scheduleWithFixedDelay(() -> checkpoint(state, scanned, written, start),
+                    checkpointNanos, checkpointNanos, TimeUnit.NANOSECONDS);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < state.length(); i++) {
+                int slot = i;
+                if (state.get(slot).done()) continue;
+                futures.add(pool.submit(() -> {
+                    scanRange(slot, state, snapshot, scanned, written, throttle);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        } catch (ExecutionException e) {
+            stopped = true;
+            Throwable c = e.getCause();
+            if (c instanceof RocksDBException re) throw re;
+            if (c instanceof RuntimeException re) throw re;
+            throw new RocksDaoException("index backfill failed", c);
+        } finally {
+            pool.shutdownNow();
+            awaitQuietly(pool);
+            ticker.shutdownNow();
+            db.releaseSnapshot(snapshot);
+            saveQuietly(state);
+        }
+
+        boolean complete = true;
+        for (int i = 0; i < state.length(); i++) complete &= state.get(i).done();
+        if (complete) catalog.markReady(name);
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        progress.accept(new Progress(name, scanned.sum(), written.sum(), doneCount(state), state.length(), elapsed));
+        return new Result(name, scanned.sum(), written.sum(), state.length(), complete, elapsed);
+    }
+
+    private void scanRange(int slot, AtomicReferenceArray<IndexCatalog.Range> state, Snapshot snapshot,
+                           LongAdder scanned, LongAdder written, Throttle throttle) throws RocksDBException {
+        IndexCatalog.Range r = state.get(slot);
+        Slice upper = (r.to() != null) ? new Slice(r.to()) : null;
+        try (ReadOptions ro = new ReadOptions().setSnapshot(snapshot).setFillCache(false)) {
+            if (upper != null) ro.setIterateUpperBound(upper);
+            try (RocksIterator it = db.newIterator(def.primaryCf(), ro)) {
+                if (r.cursor() != null) {
+                    it.seek(r.cursor());
+                    if (it.isValid() && Arrays.equals(it.key(), r.cursor())) it.next();
+                } else if (r.from() != null) {
+                    it.seek(r.from());
+                } else {
+                    it.seekToFirst();
+                }
+
+                List<byte[]> keys = new ArrayList<>(batchSize);
+                while (!stopped && !Thread.currentThread().isInterrupted()) {
+                    keys.clear();
+                    for (; it.isValid() && keys.size() < batchSize; it.next()) keys.add(it.key());
+                    it.status();
+                    if (keys.isEmpty()) {
+                        state.set(slot, state.get(slot).advanced(state.get(slot).cursor(), true));
+                        return;
+                    }
+                    throttle.acquire(keys.size());
+                    written.add(indexBatch(keys));
+                    scanned.add(keys.size());
+                    state.set(slot, state.get(slot).advanced(keys.get(keys.size() - 1), false));
+                }
+            }
+        } finally {
+            if (upper != null) upper.close();
+        }
+    }
+
+    /** Locks the rows, re-reads their current values and writes their index entries; returns entries written. */
+    private int indexBatch(List<byte[]> pks) throws RocksDBException {
+        List<ColumnFamilyHandle> cfs = Collections.nCopies(pks.size(), def.primaryCf());
+        for (int attempt = 1; ; attempt++) {
+            try (WriteOptions wo = new WriteOptions();
+                 ReadOptions ro = new ReadOptions();
+                 Transaction txn = Engines.beginTransaction(db, wo)) {
+                List<byte[]> values = txn.multiGetForUpdateAsList(ro, cfs, pks);
+                List<byte[]> keys = new ArrayList<>();
+                List<byte[]> owners = new ArrayList<>();
+                for (int i = 0; i < pks.size(); i++) {
+                    byte[] vb = values.get(i);
+                    if (vb == null) continue; // deleted since the snapshot
+                    for (ByteArrayKey k : IndexKeys.entriesOf(index, def.valueCodec().decode(vb), pks.get(i))) {
+                        keys.add(k.bytes());
+                        owners.add(pks.get(i));
+                    }
+                }
+                // DIRECT entries are shared by value: one a writer (or an earlier row) already holds is kept
+                List<byte[]> held = (index.layout() == IndexDef.Layout.DIRECT && !keys.isEmpty())
+                        ? txn.multiGetForUpdateAsList(ro, Collections.nCopies(keys.size(), indexCf), keys)
+                        : null;
+                Map<ByteArrayKey, byte[]> claimed = new HashMap<>();
+                int n = 0;
+                for (int e = 0; e < keys.size(); e++) {
+                    byte[] pk = owners.get(e);
+                    if (held != null) {
+                        byte[] owner = claimed.getOrDefault(new ByteArrayKey(keys.get(e)), held.get(e));
+                        if (Arrays.equals(owner, pk)) continue;
+                        if (owner != null) {
+                            if (index.enforceUnique()) throw new UniqueConstraintException(index.name(), keys.get(e));
+                            continue;
+                        }
+                        claimed.put(new ByteArrayKey(keys.get(e)), pk);
+                    }
+                    txn.put(indexCf, keys.get(e), index.entryValue(pk));
+                    n++;
+                }
+                txn.commit();
+                return n;
+            } catch (RocksDBException e) {
+                if (attempt >= TxnRetry.MAX_ATTEMPTS || !TxnRetry.retryable(e)) throw e;
+                TxnRetry.backoff(attempt);
+            }
+        }
+    }
+
+    /** Cuts the primary key space at SST boundaries (see {@link KeySplits}). */
+    private List<IndexCatalog.Range> split() throws RocksDBException {
+        List<byte[]> cuts = KeySplits.cutPoints(db, def.primaryCf(), splits);
+        List<IndexCatalog.Range> out = new ArrayList<>(cuts.size() + 1);
+        byte[] from = null;
+        for (byte[] cut : cuts) {
+            out.add(new IndexCatalog.Range(from, cut, null, false));
+            from = cut;
+        }
+        out.add(new IndexCatalog.Range(from, null, null, false));
+        return out;
+    }
+
+    private void checkpoint(AtomicReferenceArray<IndexCatalog.Range> state, LongAdder scanned, LongAdder written,
+                            long start) {
+        saveQuietly(state);
+        progress.accept(new Progress(index.name(), scanned.sum(), written.sum(), doneCount(state), state.length(),
+                Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    private void saveQuietly(AtomicReferenceArray<IndexCatalog.Range> state) {
+        List<IndexCatalog.Range> snap = new ArrayList<>(state.length());
+        for (int i = 0; i < state.length(); i++) snap.add(state.get(i));
+        try {
+            catalog.saveRanges(index.name(), snap);
+        } catch (RocksDBException | RuntimeException e) {
+            LOG.log(System.Logger.Level.WARNING, "Saving backfill progress failed for " + index.name(), e);
+        }
+    }
+
+    private static int doneCount(AtomicReferenceArray<IndexCatalog.Range> state) {
+        int n = 0;
+        for (int i = 0; i < state.length(); i++) if (state.get(i).done()) n++;
+        return n;
+    }
+
+    private static void awaitQuietly(ExecutorService pool) {
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Build state of secondary indexes, persisted in a metadata CF (usually {@code default}).
+ * <p>
+ * An index with no entry is {@link State#READY}: indexes that were declared together with their CF
+ * never need a build. {@link #markBuilding} records that an index exists but is incomplete; DAOs with
+ * this catalog attached then refuse index queries on it until {@link IndexBackfill} (or
+ * {@link #markReady}) completes it. While building, the catalog also holds the backfill's per-range
+ * resume points.
+ */
+public final class IndexCatalog {
+
+    public enum State { READY, BUILDING }
+
+    /** A slice of the primary key space being backfilled: [from, to), with the last key done in it. */
+    record Range(byte[] from, byte[] to, byte[] cursor, boolean done) {
+        Range advanced(byte[] lastKey, boolean finished) { return new Range(from, to, lastKey, finished); }
+    }
+
+    private record Entry(State state, List<Range> ranges) {}
+
+    private static final byte[] PREFIX = "dbjo.index.".getBytes(StandardCharsets.UTF_8);
+
+    private final RocksDB db;
+    private final ColumnFamilyHandle metaCf;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public IndexCatalog(RocksDB db, ColumnFamilyHandle metaCf) throws RocksDBException {
+        this.db = Objects.requireNonNull(db, "db");
+        this.metaCf = Objects.requireNonNull(metaCf, "metaCf");
+        load();
+    }
+
+    public State state(String index) {
+        Entry e = entries.get(Objects.requireNonNull(index));
+        return (e == null) ? State.READY : e.state();
+    }
+
+    public boolean isQueryable(String index) {
+        return state(index) == State.READY;
+    }
+
+    public void requireQueryable(String index) {
+        if (!isQueryable(index)) throw new IllegalStateException("Index is still being built: " + index);
+    }
+
+    /** Declares an incomplete index; a no-op if it is already building (its progress is kept). */
+    public synchronized void markBuilding(String index) throws RocksDBException {
+        if (state(index) == State.BUILDING) return;
+        save(index, new Entry(State.BUILDING, List.of()));
+    }
+
+    /** Makes the index queryable and drops its build progress. */
+    public synchronized void markReady(String index) throws RocksDBException {
+        try (WriteOptions wo = new WriteOptions().setSync(true)) {
+            db.delete(metaCf, wo, key(index));
+        }
+        entries.remove(index);
+    }
+
+    List<Range> ranges(String index) {
+        Entry e = entries.get(index);
+        return (e == null) ? List.of() : e.ranges();
+    }
+
+    synchronized void saveRanges(String index, List<Range> ranges) throws RocksDBException {
+        if (state(index) != State.BUILDING) throw new IllegalStateException("Index is not building: " + index);
+        save(index, new Entry(State.BUILDING, List.copyOf(ranges)));
+    }
+
+    private void save(String index, Entry e) throws RocksDBException {
+        try (WriteOptions wo = new WriteOptions().setSync(true)) {
+            db.put(metaCf, wo, key(index), encode(e));
+        }
+        entries.put(index, e);
+    }
+
+    private void load() throws RocksDBException {
+        try (RocksIterator it = db.newIterator(metaCf)) {
+            for (it.seek(PREFIX); it.isValid(); it.next()) {
+                byte[] k = it.key();
+                if (!startsWith(k, PREFIX)) break;
+                String index = new String(k, PREFIX.length, k.length - PREFIX.length, StandardCharsets.UTF_8);
+                entries.put(index, decode(it.value()));
+            }
+            it.status();
+        }
+    }
+
+    private static byte[] key(String index) {
+        return ByteArrays.concat(PREFIX, index.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean startsWith(byte[] a, byte[] prefix) {
+        return a.length >= prefix.length && Arrays.equals(a, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static byte[] encode(Entry e) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(e.state().ordinal());
+            out.writeInt(e.ranges().size());
+            for (Range r : e.ranges()) {
+                writeNullable(out, r.from());
+                writeNullable(out, r.to());
+                writeNullable(out, r.cursor());
+                out.writeBoolean(r.done());
+            }
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Entry decode(byte[] b) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(b));
+            State state = State.values()[in.readByte()];
+            int n = in.readInt();
+            List<Range> ranges = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ranges.add(new Range(readNullable(in), readNullable(in), readNullable(in), in.readBoolean()));
+            }
+            return new Entry(state, List.copyOf(ranges));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b == null ? -1 : b.length);
+        if (b != null) out.write(b);
+    }
+
+    private static byte[] readNullable(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        return (n < 0) ? null : in.readNBytes(n);
+    }
+}
@@ -4,29 +4,75 @@ import java.util.*;
 import java.util.function.Function;
 
 public final class IndexDef<T> {
+
+    /** How entries of an index are laid out in its CF. */
+    public enum Layout {
+        /** key = value 0x00 pk, empty value: any number of rows per value; lookups seek a prefix. */
+        COMPOSITE,
+        /**
+         * key = value, value = pk: at most one row per value; an Eq lookup is a point get on the index
+         * (bloom filters apply) followed by a point get on the primary CF.
+         */
+        DIRECT
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
     private final String name;
     private final Function<T, Iterable<byte[]>> valueKeys; // raw encoded value keys
+    private final Layout layout;
+    private final boolean enforceUnique;
 
-    private IndexDef(String name, Function<T, Iterable<byte[]>> valueKeys) {
+    private IndexDef(String name, Function<T, Iterable<byte[]>> valueKeys, Layout layout, boolean enforceUnique) {
         this.name = Objects.requireNonNull(name);
         this.valueKeys = Objects.requireNonNull(valueKeys);
+        this.layout = Objects.requireNonNull(layout);
+        this.enforceUnique = enforceUnique;
     }
 
     public String name() { return name; }
 
+    public Layout layout() { return layout; }
+
+    /** True when writes that would give a value a second row fail with {@link UniqueConstraintException}. */
+    public boolean enforceUnique() { return enforceUnique; }
+
     public Iterable<byte[]> valueKeysOrEmpty(T entityOrNull) {
         if (entityOrNull == null) return List.of();
         Iterable<byte[]> it = valueKeys.apply(entityOrNull);
         return it != null ? it : List.of();
     }
 
+    /** The index CF key for one value key of the row stored under {@code pk}. */
+    byte[] entryKey(byte[] valueKey, byte[] pk) {
+        return (layout == Layout.DIRECT) ? valueKey : IndexKeys.unique(valueKey, pk);
+    }
+
+    /** The index CF value stored alongside {@link #entryKey}. */
+    byte[] entryValue(byte[] pk) {
+        return (layout == Layout.DIRECT) ? pk : EMPTY;
+    }
+
+    /** The pk an index entry points at, or null when the entry is malformed. */
+    byte[] pkOf(byte[] entryKey, byte[] entryValue) {
+        return (layout == Layout.DIRECT) ? entryValue : IndexKeys.pkOf(entryKey);
+    }
+
     /** One value (nullable -> “sparse index”). */
     public static <T, V> IndexDef<T> unique(String name, IndexKeyCodec<V> codec, Function<T, V> extractor) {
-        return new IndexDef<>(name, t -> {
-            V v = extractor.apply(t);
-            if (v == null) return List.of();
-            return List.of(codec.encode(v));
-        });
+        return new IndexDef<>(name, single(codec, extractor), Layout.COMPOSITE, false);
+    }
+
+    /**
+     * One value per row in the {@link Layout#DIRECT} layout. When two rows claim the same value, with
+     * {@code enforce} the second write fails with {@link UniqueConstraintException}; without it the
+     * last writer owns the entry. The check is exact inside a transaction, where the entry is read with
+     * getForUpdate and so stays locked until commit; two concurrent auto-commit writers of the same
+     * value can both pass it.
+     */
+    public static <T, V> IndexDef<T> uniqueDirect(String name, IndexKeyCodec<V> codec, Function<T, V> extractor,
+                                                  boolean enforce) {
+        return new IndexDef<>(name, single(codec, extractor), Layout.DIRECT, enforce);
     }
 
     /** Many values (nullable iterable -> empty). */
@@ -37,6 +83,14 @@ public final class IndexDef<T> {
             ArrayList<byte[]> out = new ArrayList<>();
             for (V v : vs) if (v != null) out.add(codec.encode(v));
             return out;
-        });
+        }, Layout.COMPOSITE, false);
+    }
+
+    private static <T, V> Function<T, Iterable<byte[]>> single(IndexKeyCodec<V> codec, Function<T, V> extractor) {
+        return t -> {
+            V v = extractor.apply(t);
+            if (v == null) return List.of();
+            return List.of(codec.encode(v));
+        };
     }
 }
@@ -0,0 +1,9 @@
+package org.github.dbjo.rdb;
+
+/** What a partial update declares about the indexed fields it sets; see {@link AbstractRocksDao#patch}. */
+public enum IndexEffect {
+    /** Sets no field any index reads: written blind, as a merge, without reading the row. */
+    NONE,
+    /** May change indexed fields: read, merged in memory and written with index maintenance, atomically. */
+    REINDEX
+}
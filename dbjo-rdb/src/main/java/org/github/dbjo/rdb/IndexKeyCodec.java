@@ -1,8 +1,12 @@
 package org.github.dbjo.rdb;
 
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Objects;
+import java.util.UUID;
 
+/** Encodes index values; the order-preserving codecs live in {@link IndexKeyCodecs}. */
 @FunctionalInterface
 public interface IndexKeyCodec<V> {
     byte[] encode(V v);
@@ -15,6 +19,18 @@ public interface IndexKeyCodec<V> {
         return b -> b; // already encoded
     }
 
+    static IndexKeyCodec<Integer> int32() { return IndexKeyCodecs.int32(); }
+    static IndexKeyCodec<Long> int64() { return IndexKeyCodecs.int64(); }
+    static IndexKeyCodec<Double> float64() { return IndexKeyCodecs.float64(); }
+    static IndexKeyCodec<BigDecimal> decimal() { return IndexKeyCodecs.decimal(); }
+    static IndexKeyCodec<java.util.Date> timestamp() { return IndexKeyCodecs.timestamp(); }
+    static IndexKeyCodec<Instant> instant() { return IndexKeyCodecs.instant(); }
+    static IndexKeyCodec<UUID> uuid() { return IndexKeyCodecs.uuid(); }
+    static IndexKeyCodec<Boolean> bool() { return IndexKeyCodecs.bool(); }
+    static IndexKeyCodec<String> text() { return IndexKeyCodecs.text(); }
+    static IndexKeyCodec<byte[]> bytes() { return IndexKeyCodecs.bytes(); }
+    static IndexKeyCodec<Object[]> tuple(IndexKeyCodec<?>... parts) { return IndexKeyCodecs.tuple(parts); }
+
     static <V> IndexKeyCodec<V> requireNonNull(IndexKeyCodec<V> c) {
         return v -> Objects.requireNonNull(c.encode(v), "encoded index key is null");
     }
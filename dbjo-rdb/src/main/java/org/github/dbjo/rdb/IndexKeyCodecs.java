@@ -0,0 +1,142 @@
+package org.github.dbjo.rdb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Order-preserving index value encodings: for two values of one codec, the unsigned byte order of the
+ * encodings (RocksDB's order) is the natural order of the values, so an {@link IndexPredicate.Range}
+ * over encoded bounds is served by the index iterator alone.
+ * <p>
+ * Every codec here finishes with an escape that moves bytes 0x00..0x02 to two-byte sequences starting
+ * with 0x02, so output never contains 0x00 (the separator of composite index keys) or 0x01 (the
+ * separator between {@link #tuple} components). That keeps keys parseable and a shorter value sorting
+ * before every longer value it prefixes, whatever follows it in the key.
+ */
+public final class IndexKeyCodecs {
+    private IndexKeyCodecs() {}
+
+    static final byte TUPLE_SEP = 0x01;
+    private static final byte ESC = 0x02;
+
+    public static IndexKeyCodec<Integer> int32() {
+        return v -> (v == null) ? null : escape(ByteBuffer.allocate(Integer.BYTES).putInt(v ^ Integer.MIN_VALUE).array());
+    }
+
+    public static IndexKeyCodec<Long> int64() {
+        return v -> (v == null) ? null : escape(ByteBuffer.allocate(Long.BYTES).putLong(v ^ Long.MIN_VALUE).array());
+    }
+
+    /** -0.0 encodes as 0.0; NaN sorts after positive infinity. */
+    public static IndexKeyCodec<Double> float64() {
+        return v -> {
+            if (v == null) return null;
+            return escape(ByteBuffer.allocate(Long.BYTES).putLong(OrderedBytes.float64Bits(v)).array());
+        };
+    }
+
+    /** Numeric order regardless of scale: 1.5 and 1.50 encode the same. */
+    public static IndexKeyCodec<BigDecimal> decimal() {
+        return v -> (v == null) ? null : escape(OrderedBytes.decimal(v, false));
+    }
+
+    /**
+     * {@link java.util.Date} and its {@code java.sql} subclasses by instant, to the nanosecond for
+     * {@link java.sql.Timestamp}.
+     */
+    public static IndexKeyCodec<java.util.Date> timestamp() {
+        return d -> {
+            if (d == null) return null;
+            long millis = d.getTime();
+            int nanos = (d instanceof java.sql.Timestamp ts) ? ts.getNanos() : (int) Math.floorMod(millis, 1000L) * 1_000_000;
+            return escape(OrderedBytes.instant(Math.floorDiv(millis, 1000L), nanos));
+        };
+    }
+
+    public static IndexKeyCodec<Instant> instant() {
+        return i -> (i == null) ? null : escape(OrderedBytes.instant(i.getEpochSecond(), i.getNano()));
+    }
+
+    /** Unsigned big-endian order, i.e. the order of the canonical string form (not {@link UUID#compareTo}). */
+    public static IndexKeyCodec<UUID> uuid() {
+        return u -> (u == null) ? null : escape(ByteBuffer.allocate(16)
+                .putLong(u.getMostSignificantBits()).putLong(u.getLeastSignificantBits()).array());
+    }
+
+    public static IndexKeyCodec<Boolean> bool() {
+        return b -> (b == null) ? null : escape(new byte[]{(byte) (b ? 1 : 0)});
+    }
+
+    /** UTF-8 (code point order), escaped; unlike {@link IndexKeyCodec#stringUtf8()} it can go in a {@link #tuple}. */
+    public static IndexKeyCodec<String> text() {
+        return s -> (s == null) ? null : escape(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Unsigned lexicographic order, escaped; unlike {@link IndexKeyCodec#rawBytes()} it can go in a {@link #tuple}. */
+    public static IndexKeyCodec<byte[]> bytes() {
+        return b -> (b == null) ? null : escape(b);
+    }
+
+    /**
+     * Composite values, ordered by the first component, then the second, and so on. Components must
+     * use codecs from this class. A value with a null component encodes to null, so the row is left out
+     * of the index. Fewer values than parts encode a prefix, for {@link #prefixRange}.
+     */
+    public static IndexKeyCodec<Object[]> tuple(IndexKeyCodec<?>... parts) {
+        IndexKeyCodec<?>[] ps = parts.clone();
+        for (IndexKeyCodec<?> p : ps) Objects.requireNonNull(p, "part");
+        return vs -> {
+            if (vs == null) return null;
+            if (vs.length > ps.length) throw new IllegalArgumentException("Expected at most " + ps.length + " values, got " + vs.length);
+            byte[][] enc = new byte[vs.length][];
+            int len = Math.max(0, vs.length - 1);
+            for (int i = 0; i < vs.length; i++) {
+                if (vs[i] == null) return null;
+                enc[i] = encodePart(ps[i], vs[i]);
+                if (enc[i] == null) return null;
+                len += enc[i].length;
+            }
+            byte[] out = new byte[len];
+            int pos = 0;
+            for (int i = 0; i < enc.length; i++) {
+                if (i > 0) out[pos++] = TUPLE_SEP;
+                System.arraycopy(enc[i], 0, out, pos, enc[i].length);
+                pos += enc[i].length;
+            }
+            return out;
+        };
+    }
+
+    /** All values of a {@link #tuple} index whose leading components encode to {@code prefix}. */
+    public static IndexPredicate.Range prefixRange(String indexName, byte[] prefix) {
+        // every longer value continues with TUPLE_SEP (0x01) or a data byte >= ESC, so prefix+ESC bounds both
+        return new IndexPredicate.Range(indexName, prefix, true, ByteArrays.concat(prefix, ESC), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> byte[] encodePart(IndexKeyCodec<V> codec, Object v) {
+        return codec.encode((V) v);
+    }
+
+    /** 0x00 -> 02 02, 0x01 -> 02 03, 0x02 -> 02 04; other bytes unchanged. Order-preserving, and never 0x00 or 0x01. */
+    static byte[] escape(byte[] raw) {
+        int extra = 0;
+        for (byte b : raw) if ((b & 0xFF) <= ESC) extra++;
+        if (extra == 0) return raw;
+        byte[] out = new byte[raw.length + extra];
+        int pos = 0;
+        for (byte b : raw) {
+            if ((b & 0xFF) <= ESC) {
+                out[pos++] = ESC;
+                out[pos++] = (byte) (b + 2);
+            } else {
+                out[pos++] = b;
+            }
+        }
+        return out;
+    }
+}
@@ -1,5 +1,9 @@
 package org.github.dbjo.rdb;
 
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 public final class IndexKeys {
     private IndexKeys() {}
     public static final byte SEP = 0;
@@ -8,4 +12,19 @@ public final class IndexKeys {
     public static byte[] unique(byte[] valueBytes, byte[] pkBytes) {
         return ByteArrays.concat(valueBytes, SEP, pkBytes);
     }
+
+    /** The pk part of an index key (after the first separator), or null when there is none. */
+    public static byte[] pkOf(byte[] indexKey) {
+        int sep = ByteArrays.indexOf(indexKey, SEP);
+        return (sep < 0) ? null : Arrays.copyOfRange(indexKey, sep + 1, indexKey.length);
+    }
+
+    /** The full index keys {@code idx} should hold for {@code entity} stored under {@code pk}. */
+    static <T> Set<ByteArrayKey> entriesOf(IndexDef<T> idx, T entity, byte[] pk) {
+        Set<ByteArrayKey> out = new LinkedHashSet<>();
+        for (byte[] v : idx.valueKeysOrEmpty(entity)) {
+            if (v != null) out.add(new ByteArrayKey(idx.entryKey(v, pk)));
+        }
+        return out;
+    }
 }
@@ -1,7 +1,14 @@
 package org.github.dbjo.rdb;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
 public sealed interface IndexPredicate
-        permits IndexPredicate.Eq, IndexPredicate.Range {
+        permits IndexPredicate.Eq, IndexPredicate.Range, IndexPredicate.In {
+
+    String indexName();
 
     record Eq(String indexName, byte[] valueBytes) implements IndexPredicate {}
 
@@ -10,4 +17,26 @@ public sealed interface IndexPredicate
             byte[] from, boolean fromInclusive,
             byte[] to,   boolean toInclusive
     ) implements IndexPredicate {}
-}
\ No newline at end of file
+
+    /**
+     * Rows whose value is any of {@code values}. The scan sorts and dedupes the values, then walks them
+     * with one iterator by forward seeks (or multiGets on a DIRECT index) and fetches primary rows in
+     * batches. Rows come back in index order, not in the order given.
+     */
+    record In(String indexName, List<byte[]> values) implements IndexPredicate {
+        public In {
+            Objects.requireNonNull(indexName);
+            values = List.copyOf(values);
+        }
+
+        /** Encodes {@code values} with {@code codec}; values that encode to null are not indexed and are dropped. */
+        public static <V> In of(String indexName, IndexKeyCodec<V> codec, Collection<? extends V> values) {
+            List<byte[]> out = new ArrayList<>(values.size());
+            for (V v : values) {
+                byte[] b = codec.encode(v);
+                if (b != null) out.add(b);
+            }
+            return new In(indexName, out);
+        }
+    }
+}
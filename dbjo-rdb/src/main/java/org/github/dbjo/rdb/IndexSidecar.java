@@ -0,0 +1,74 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.ColumnFamilyHandle;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Per-row record of the index value keys currently written for a primary key, stored in its own CF
+ * under the same key as the row. Records carry a fingerprint of the index list they were written for;
+ * a record from a different index set (an index was added or removed since) reads as unknown.
+ */
+final class IndexSidecar {
+
+    private static final byte VERSION = 1;
+
+    private final ColumnFamilyHandle cf;
+    private final int fingerprint;
+    private final int indexCount;
+
+    IndexSidecar(ColumnFamilyHandle cf, List<? extends IndexDef<?>> indexes) {
+        this.cf = Objects.requireNonNull(cf, "cf");
+        CRC32 crc = new CRC32();
+        for (IndexDef<?> idx : indexes) {
+            crc.update(idx.name().getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        this.fingerprint = (int) crc.getValue();
+        this.indexCount = indexes.size();
+    }
+
+    ColumnFamilyHandle cf() { return cf; }
+
+    /** One set of value keys per index, in declaration order. */
+    byte[] encode(List<Set<ByteArrayKey>> valueKeys) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(VERSION);
+            out.writeInt(fingerprint);
+            for (Set<ByteArrayKey> keys : valueKeys) {
+                out.writeInt(keys.size());
+                for (ByteArrayKey k : keys) {
+                    out.writeInt(k.bytes().length);
+                    out.write(k.bytes());
+                }
+            }
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The recorded value keys, or null when there is no usable record. */
+    List<Set<ByteArrayKey>> decode(byte[] recordOrNull) {
+        if (recordOrNull == null || recordOrNull.length < 5) return null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(recordOrNull));
+            if (in.readByte() != VERSION || in.readInt() != fingerprint) return null;
+            List<Set<ByteArrayKey>> out = new ArrayList<>(indexCount);
+            for (int i = 0; i < indexCount; i++) {
+                int n = in.readInt();
+                Set<ByteArrayKey> keys = new HashSet<>(Math.max(4, n * 2));
+                for (int j = 0; j < n; j++) keys.add(new ByteArrayKey(in.readNBytes(in.readInt())));
+                out.add(keys);
+            }
+            return out;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
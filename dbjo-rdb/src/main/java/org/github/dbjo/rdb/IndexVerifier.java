@@ -0,0 +1,392 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Checks an entity's index CFs against its primary CF, and optionally repairs them.
+ * <p>
+ * Both directions run from one snapshot, in parallel key ranges (see {@link KeySplits}):
+ * <ul>
+ *   <li>primary ranges: each row's expected entries, for every index, are looked up with a multiGet;
+ *       absent ones are <em>missing</em>;</li>
+ *   <li>index ranges: each entry's row is fetched; an entry whose row is gone or no longer maps to it
+ *       is <em>stale</em>.</li>
+ * </ul>
+ * A {@link IndexDef.Layout#DIRECT} entry holds one pk per value, so a value shared by several rows
+ * (possible when uniqueness is not enforced) is only missing when no row holds it. An entry pointing
+ * at the wrong row is stale; repair deletes it and the next run restores it as missing.
+ * With repair on, each batch of findings is re-checked against the current data inside a transaction
+ * that locks the rows (as {@link IndexBackfill} does), so a repair never undoes a concurrent write.
+ * Repairs are throttled separately from the scan.
+ */
+public final class IndexVerifier<T, K> {
+
+    /** Findings for one index. Rates are relative to rows checked (missing) and entries checked (stale). */
+    public record IndexReport(String index, long rowsChecked, long entriesChecked, long missing, long stale,
+                              long repairedMissing, long repairedStale) {
+        public double missingRate() { return (rowsChecked == 0) ? 0 : (double) missing / rowsChecked; }
+        public double staleRate() { return (entriesChecked == 0) ? 0 : (double) stale / entriesChecked; }
+    }
+
+    /** A full run, or the state so far when passed to the progress callback. */
+    public record Report(long rowsChecked, List<IndexReport> indexes, boolean complete, Duration elapsed) {}
+
+    private static final System.Logger LOG = System.getLogger(IndexVerifier.class.getName());
+    private static final byte[] EMPTY = new byte[0];
+
+    /** One discrepancy to re-check and fix: {@code missing} means put, otherwise delete. */
+    private record Finding(int index, byte[] entryKey, byte[] pk, boolean missing) {}
+
+    private static final class Counters {
+        final LongAdder entries = new LongAdder();
+        final LongAdder missing = new LongAdder();
+        final LongAdder stale = new LongAdder();
+        final LongAdder repairedMissing = new LongAdder();
+        final LongAdder repairedStale = new LongAdder();
+    }
+
+    private final RocksDB db;
+    private final EntityDef<T, K> def;
+    private final List<IndexDef<T>> indexes;
+    private final List<ColumnFamilyHandle> indexCfs;
+    private final int parallelism;
+    private final int splits;
+    private final int batchSize;
+    private final boolean repair;
+    private final long maxRowsPerSecond;
+    private final long maxRepairsPerSecond;
+    private final long progressNanos;
+    private final Consumer<Report> progress;
+
+    private IndexVerifier(Builder<T, K> b) {
+        this.db = Objects.requireNonNull(b.db, "db");
+        this.def = b.ent.def();
+        List<IndexDef<T>> idx = new ArrayList<>();
+        List<ColumnFamilyHandle> cfs = new ArrayList<>();
+        for (IndexDef<T> i : def.indexes()) {
+            if (b.only != null && !b.only.contains(i.name())) continue;
+            if (b.catalog != null && !b.catalog.isQueryable(i.name())) continue; // still building
+            idx.add(i);
+            cfs.add(b.ent.indexCf(i.name()));
+        }
+        this.indexes = List.copyOf(idx);
+        this.indexCfs = List.copyOf(cfs);
+        this.parallelism = Math.max(1, b.parallelism);
+        this.splits = Math.max(1, (b.splits > 0) ? b.splits : parallelism * 4);
+        this.batchSize = Math.max(1, b.batchSize);
+        this.repair = b.repair;
+        this.maxRowsPerSecond = b.maxRowsPerSecond;
+        this.maxRepairsPerSecond = b.maxRepairsPerSecond;
+        this.progressNanos = b.progressEvery.toNanos();
+        this.progress = Objects.requireNonNull(b.progress, "progress");
+    }
+
+    /** Repair needs a transactional engine (PESSIMISTIC or OPTIMISTIC); checking alone runs on any. */
+    public static <T, K> Builder<T, K> builder(RocksDB db, ResolvedEntityDef<T, K> ent) {
+        return new Builder<>(db, Objects.requireNonNull(ent, "ent"));
+    }
+
+    public static final class Builder<T, K> {
+        private final RocksDB db;
+        private final ResolvedEntityDef<T, K> ent;
+        private Set<String> only;
+        private IndexCatalog catalog;
+        private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int splits;
+        private int batchSize = 1_000;
+        private boolean repair;
+        private long maxRowsPerSecond;
+        private long maxRepairsPerSecond = 10_000;
+        private Duration progressEvery = Duration.ofSeconds(10);
+        private Consumer<Report> progress = r -> LOG.log(System.Logger.Level.INFO, r.toString());
+
+        private Builder(RocksDB db, ResolvedEntityDef<T, K> ent) {
+            this.db = db;
+            this.ent = ent;
+        }
+
+        /** Restricts the check to these indexes (default: all declared). */
+        public Builder<T, K> indexes(String... names) { this.only = Set.of(names); return this; }
+        /** Skips indexes the catalog reports as still building. */
+        public Builder<T, K> catalog(IndexCatalog c) { this.catalog = c; return this; }
+        public Builder<T, K> parallelism(int n) { this.parallelism = n; return this; }
+        /** Ranges per CF (default 4 per worker). */
+        public Builder<T, K> splits(int n) { this.splits = n; return this; }
+        public Builder<T, K> batchSize(int n) { this.batchSize = n; return this; }
+        public Builder<T, K> repair(boolean b) { this.repair = b; return this; }
+        /** Scan cap (rows plus index entries) across all workers; 0 means unthrottled. */
+        public Builder<T, K> maxRowsPerSecond(long n) { this.maxRowsPerSecond = n; return this; }
+        /** Repair cap across all workers; 0 means unthrottled. */
+        public Builder<T, K> maxRepairsPerSecond(long n) { this.maxRepairsPerSecond = n; return this; }
+        public Builder<T, K> progressEvery(Duration d) { this.progressEvery = d; return this; }
+        public Builder<T, K> progress(Consumer<Report> c) { this.progress = c; return this; }
+        public IndexVerifier<T, K> build() { return new IndexVerifier<>(this); }
+    }
+
+    public Report run() throws RocksDBException {
+        long start = System.nanoTime();
+        LongAdder rows = new LongAdder();
+        List<Counters> counters = new ArrayList<>();
+        for (int i = 0; i < indexes.size(); i++) counters.add(new Counters());
+        Throttle scanThrottle = new Throttle(maxRowsPerSecond);
+        Throttle repairThrottle = new Throttle(maxRepairsPerSecond);
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "dbjo-verify-" + def.name());
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dbjo-verify-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        Snapshot snapshot = db.getSnapshot();
+        boolean complete = false;
+        try {
+            ticker.scheduleWithFixedDelay(() -> progress.accept(report(rows, counters, false, start)),
+                    progressNanos, progressNanos, TimeUnit.NANOSECONDS);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (byte[][] r : ranges(def.primaryCf())) {
+                futures.add(pool.submit(() -> {
+                    checkRows(r[0], r[1], snapshot, rows, counters, scanThrottle, repairThrottle);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                int ix = i;
+                for (byte[][] r : ranges(indexCfs.get(ix))) {
+                    futures.add(pool.submit(() -> {
+                        checkEntries(ix, r[0], r[1], snapshot, counters, scanThrottle, repairThrottle);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> f : futures) f.get();
+            complete = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof RocksDBException re) throw re;
+            if (c instanceof RuntimeException re) throw re;
+            throw new RocksDaoException("index verification failed", c);
+        } finally {
+            pool.shutdownNow();
+            ticker.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            db.releaseSnapshot(snapshot);
+        }
+        Report r = report(rows, counters, complete, start);
+        progress.accept(r);
+        return r;
+    }
+
+    /** Primary side: every row's expected entries must exist. */
+    private void checkRows(byte[] from, byte[] to, Snapshot snapshot, LongAdder rows, List<Counters> counters,
+                           Throttle scanThrottle, Throttle repairThrottle) throws RocksDBException {
+        try (RangeScan scan = new RangeScan(def.primaryCf(), from, to, snapshot);
+             ReadOptions ro = new ReadOptions().setSnapshot(snapshot).setFillCache(false)) {
+            List<byte[]> pks = new ArrayList<>(batchSize);
+            List<T> values = new ArrayList<>(batchSize);
+            while (!Thread.currentThread().isInterrupted()) {
+                pks.clear();
+                values.clear();
+                while (pks.size() < batchSize && scan.next()) {
+                    pks.add(scan.key());
+                    values.add(def.valueCodec().decode(scan.value()));
+                }
+                if (pks.isEmpty()) return;
+                scanThrottle.acquire(pks.size());
+                rows.add(pks.size());
+
+                List<Finding> findings = new ArrayList<>();
+                for (int ix = 0; ix < indexes.size(); ix++) {
+                    List<byte[]> expected = new ArrayList<>();
+                    List<byte[]> owners = new ArrayList<>();
+                    for (int r = 0; r < pks.size(); r++) {
+                        for (ByteArrayKey k : IndexKeys.entriesOf(indexes.get(ix), values.get(r), pks.get(r))) {
+                            expected.add(k.bytes());
+                            owners.add(pks.get(r));
+                        }
+                    }
+                    if (expected.isEmpty()) continue;
+                    List<byte[]> found = db.multiGetAsList(ro, Collections.nCopies(expected.size(), indexCfs.get(ix)), expected);
+                    for (int e = 0; e < expected.size(); e++) {
+                        if (found.get(e) != null) continue;
+                        counters.get(ix).missing.increment();
+                        if (repair) findings.add(new Finding(ix, expected.get(e), owners.get(e), true));
+                    }
+                }
+                repair(findings, counters, repairThrottle);
+            }
+        }
+    }
+
+    /** Index side: every entry must point at a row that still maps to it. */
+    private void checkEntries(int ix, byte[] from, byte[] to, Snapshot snapshot, List<Counters> counters,
+                              Throttle scanThrottle, Throttle repairThrottle) throws RocksDBException {
+        IndexDef<T> idx = indexes.get(ix);
+        Counters c = counters.get(ix);
+        try (RangeScan scan = new RangeScan(indexCfs.get(ix), from, to, snapshot);
+             ReadOptions ro = new ReadOptions().setSnapshot(snapshot).setFillCache(false)) {
+            List<byte[]> keys = new ArrayList<>(batchSize);
+            List<byte[]> pks = new ArrayList<>(batchSize);
+            while (!Thread.currentThread().isInterrupted()) {
+                keys.clear();
+                pks.clear();
+                while (keys.size() < batchSize && scan.next()) {
+                    byte[] pk = idx.pkOf(scan.key(), scan.value());
+                    keys.add(scan.key());
+                    pks.add(pk == null ? EMPTY : pk);
+                }
+                if (keys.isEmpty()) return;
+                scanThrottle.acquire(keys.size());
+                c.entries.add(keys.size());
+
+                List<byte[]> rows = db.multiGetAsList(ro, Collections.nCopies(pks.size(), def.primaryCf()), pks);
+                Map<ByteArrayKey, Set<ByteArrayKey>> expectedByPk = new HashMap<>();
+                List<Finding> findings = new ArrayList<>();
+                for (int e = 0; e < keys.size(); e++) {
+                    byte[] vb = rows.get(e);
+                    boolean ok = false;
+                    if (vb != null) {
+                        byte[] pk = pks.get(e);
+                        Set<ByteArrayKey> expected = expectedByPk.computeIfAbsent(new ByteArrayKey(pk),
+                                k -> IndexKeys.entriesOf(idx, def.valueCodec().decode(vb), pk));
+                        ok = expected.contains(new ByteArrayKey(keys.get(e)));
+                    }
+                    if (ok) continue;
+                    c.stale.increment();
+                    if (repair) findings.add(new Finding(ix, keys.get(e), pks.get(e), false));
+                }
+                repair(findings, counters, repairThrottle);
+            }
+        }
+    }
+
+    /** Re-checks findings against the current rows, locked, and fixes those that still hold. */
+    private void repair(List<Finding> findings, List<Counters> counters, Throttle throttle) throws RocksDBException {
+        if (findings.isEmpty()) return;
+        throttle.acquire(findings.size());
+
+        LinkedHashMap<ByteArrayKey, Integer> pkSlots = new LinkedHashMap<>();
+        for (Finding f : findings) pkSlots.putIfAbsent(new ByteArrayKey(f.pk()), pkSlots.size());
+        List<byte[]> pks = new ArrayList<>(pkSlots.size());
+        for (ByteArrayKey k : pkSlots.keySet()) pks.add(k.bytes());
+
+        for (int attempt = 1; ; attempt++) {
+            long[] fixedMissing = new long[indexes.size()];
+            long[] fixedStale = new long[indexes.size()];
+            try (WriteOptions wo = new WriteOptions();
+                 ReadOptions ro = new ReadOptions();
+                 Transaction txn = Engines.beginTransaction(db, wo)) {
+                List<byte[]> current = txn.multiGetForUpdateAsList(ro, Collections.nCopies(pks.size(), def.primaryCf()), pks);
+                Map<Integer, T> decoded = new HashMap<>();
+                for (Finding f : findings) {
+                    int slot = pkSlots.get(new ByteArrayKey(f.pk()));
+                    byte[] vb = current.get(slot);
+                    T entity = (vb == null) ? null : decoded.computeIfAbsent(slot, s -> def.valueCodec().decode(vb));
+                    boolean belongs = entity != null
+                            && IndexKeys.entriesOf(indexes.get(f.index()), entity, f.pk()).contains(new ByteArrayKey(f.entryKey()));
+                    IndexDef<T> idx = indexes.get(f.index());
+                    ColumnFamilyHandle cf = indexCfs.get(f.index());
+                    if (idx.layout() == IndexDef.Layout.DIRECT) {
+                        // the entry is shared by value: only touch it while it is still absent / still ours
+                        byte[] owner = txn.getForUpdate(ro, cf, f.entryKey(), true);
+                        if (f.missing() ? owner != null : !Arrays.equals(owner, f.pk())) continue;
+                    }
+                    if (f.missing() && belongs) {
+                        txn.put(cf, f.entryKey(), idx.entryValue(f.pk()));
+                        fixedMissing[f.index()]++;
+                    } else if (!f.missing() && !belongs) {
+                        txn.delete(cf, f.entryKey());
+                        fixedStale[f.index()]++;
+                    }
+                }
+                txn.commit();
+                for (int i = 0; i < indexes.size(); i++) {
+                    Counters c = counters.get(i);
+                    c.repairedMissing.add(fixedMissing[i]);
+                    c.repairedStale.add(fixedStale[i]);
+                }
+                return;
+            } catch (RocksDBException e) {
+                if (attempt >= TxnRetry.MAX_ATTEMPTS || !TxnRetry.retryable(e)) throw e;
+                TxnRetry.backoff(attempt);
+            }
+        }
+    }
+
+    private List<byte[][]> ranges(ColumnFamilyHandle cf) throws RocksDBException {
+        List<byte[]> cuts = KeySplits.cutPoints(db, cf, splits);
+        List<byte[][]> out = new ArrayList<>(cuts.size() + 1);
+        byte[] from = null;
+        for (byte[] cut : cuts) {
+            out.add(new byte[][]{from, cut});
+            from = cut;
+        }
+        out.add(new byte[][]{from, null});
+        return out;
+    }
+
+    private Report report(LongAdder rows, List<Counters> counters, boolean complete, long start) {
+        long r = rows.sum();
+        List<IndexReport> out = new ArrayList<>(indexes.size());
+        for (int i = 0; i < indexes.size(); i++) {
+            Counters c = counters.get(i);
+            out.add(new IndexReport(indexes.get(i).name(), r, c.entries.sum(), c.missing.sum(), c.stale.sum(),
+                    c.repairedMissing.sum(), c.repairedStale.sum()));
+        }
+        return new Report(r, List.copyOf(out), complete, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /** Snapshot iterator over [from, to) of one CF. */
+    private final class RangeScan implements AutoCloseable {
+        private final ReadOptions ro;
+        private final Slice upper;
+        private final RocksIterator it;
+        private boolean started;
+        private boolean exhausted;
+
+        RangeScan(ColumnFamilyHandle cf, byte[] from, byte[] to, Snapshot snapshot) {
+            this.ro = new ReadOptions().setSnapshot(snapshot).setFillCache(false);
+            this.upper = (to != null) ? new Slice(to) : null;
+            if (upper != null) ro.setIterateUpperBound(upper);
+            this.it = db.newIterator(cf, ro);
+            if (from != null) it.seek(from);
+            else it.seekToFirst();
+        }
+
+        boolean next() throws RocksDBException {
+            if (exhausted) return false; // next() on an invalid iterator is undefined behaviour
+            if (started) it.next();
+            started = true;
+            if (it.isValid()) return true;
+            exhausted = true;
+            it.status();
+            return false;
+        }
+
+        byte[] key() { return it.key(); }
+        byte[] value() { return it.value(); }
+
+        @Override
+        public void close() {
+            it.close();
+            ro.close();
+            if (upper != null) upper.close();
+        }
+    }
+}
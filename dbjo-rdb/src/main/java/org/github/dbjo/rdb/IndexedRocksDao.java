@@ -1,14 +1,16 @@
 package org.github.dbjo.rdb;
 
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDBException;
 
 import java.util.*;
 
 public abstract class IndexedRocksDao<T, K> extends AbstractRocksDao<T, K> {
 
-    private static final byte[] EMPTY = new byte[0];
     private final List<IndexDef<T>> indexes;
+    private final Set<String> directIndexes;
+    private volatile IndexSidecar sidecar;
 
     protected IndexedRocksDao(
             RocksSessions sessions,
@@ -20,6 +22,9 @@ public abstract class IndexedRocksDao<T, K> extends AbstractRocksDao<T, K> {
     ) {
         super(sessions, primaryCf, keyCodec, valueCodec, indexCfs);
         this.indexes = List.copyOf(indexes);
+        Set<String> direct = new HashSet<>();
+        for (IndexDef<T> idx : this.indexes) if (idx.layout() == IndexDef.Layout.DIRECT) direct.add(idx.name());
+        this.directIndexes = Set.copyOf(direct);
     }
 
     /** Convenience: pull key/codec/indexes from EntityDef. */
@@ -36,51 +41,251 @@ public abstract class IndexedRocksDao<T, K> extends AbstractRocksDao<T, K> {
                 ent.def().indexes());
     }
 
+    /**
+     * Records, per primary key in {@code cf}, the index value keys currently written for the row, so
+     * upserts and deletes diff index entries from those few bytes instead of reading and decoding the
+     * old row. Rows without a usable record (written before, or under another index list) fall back
+     * to decoding. Once enabled keep it enabled: writes made while it is off leave records stale.
+     * To retire it, drop the CF.
+     */
+    public void enableIndexSidecar(ColumnFamilyHandle cf) {
+        this.sidecar = new IndexSidecar(cf, indexes);
+    }
+
+    /**
+     * The row holding {@code valueKey} in a unique index. On a {@link IndexDef.Layout#DIRECT} index this
+     * is two point gets; on a composite one, the first entry under the value prefix.
+     */
+    public Optional<T> findUnique(String index, byte[] valueKey) {
+        Objects.requireNonNull(valueKey);
+        Query<K> q = Query.<K>builder().where(new IndexPredicate.Eq(index, valueKey)).limit(1).build();
+        try (var st = stream(q)) {
+            return st.findFirst().map(Map.Entry::getValue);
+        }
+    }
+
+    @Override
+    Set<String> directIndexes() { return directIndexes; }
+
+    @Override
+    boolean hasIndexedValues(T value) {
+        for (IndexDef<T> idx : indexes) if (idx.valueKeysOrEmpty(value).iterator().hasNext()) return true;
+        return false;
+    }
+
+    IndexDef<T> index(String name) {
+        for (IndexDef<T> idx : indexes) if (idx.name().equals(name)) return idx;
+        throw new IllegalArgumentException("Unknown index: " + name);
+    }
+
     @Override
     protected final void maintainIndexes(RocksWriteBatch batch, K key, T oldValueOrNull, T newValue)
             throws RocksDBException {
 
         final byte[] pk = keyCodec.encodeKey(key);
+        List<Set<ByteArrayKey>> newKeys = valueKeys(newValue);
+        diff(batch, pk, valueKeys(oldValueOrNull), newKeys);
+
+        IndexSidecar sc = this.sidecar;
+        if (sc != null) batch.put(sc.cf(), pk, sc.encode(newKeys));
+    }
+
+    @Override
+    protected final void maintainIndexesOnDelete(RocksWriteBatch batch, K key, T oldValue)
+            throws RocksDBException {
+
+        final byte[] pk = keyCodec.encodeKey(key);
+        diff(batch, pk, valueKeys(oldValue), emptyKeys());
 
-        for (IndexDef<T> idx : indexes) {
-            ColumnFamilyHandle cf = indexCfs.get(idx.name());
-            if (cf == null) throw new IllegalStateException("Missing index CF for " + idx.name());
+        IndexSidecar sc = this.sidecar;
+        if (sc != null) batch.delete(sc.cf(), pk);
+    }
+
+    @Override
+    public void upsert(K key, T value) {
+        IndexSidecar sc = this.sidecar;
+        if (sc == null) {
+            super.upsert(key, value);
+            return;
+        }
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        writeWithSidecar(sc, List.of(key), List.of(value), "upsert failed");
+    }
 
-            Set<ByteArrayKey> oldKeys = toSet(idx.valueKeysOrEmpty(oldValueOrNull));
-            Set<ByteArrayKey> newKeys = toSet(idx.valueKeysOrEmpty(newValue));
+    @Override
+    public void putAll(Map<K, T> entries) {
+        IndexSidecar sc = this.sidecar;
+        if (sc == null) {
+            super.putAll(entries);
+            return;
+        }
+        Objects.requireNonNull(entries);
+        if (entries.isEmpty()) return;
+        List<K> ks = new ArrayList<>(entries.size());
+        List<T> vs = new ArrayList<>(entries.size());
+        for (var e : entries.entrySet()) {
+            ks.add(Objects.requireNonNull(e.getKey()));
+            vs.add(Objects.requireNonNull(e.getValue()));
+        }
+        writeWithSidecar(sc, ks, vs, "putAll failed");
+    }
 
-            // delete removed
-            for (ByteArrayKey v : oldKeys) {
-                if (!newKeys.contains(v)) {
-                    batch.delete(cf, IndexKeys.unique(v.bytes(), pk));
+    @Override
+    void applyAll(Map<K, T> valuesOrNull) {
+        IndexSidecar sc = this.sidecar;
+        if (sc == null) {
+            super.applyAll(valuesOrNull);
+            return;
+        }
+        if (valuesOrNull.isEmpty()) return;
+        List<K> ks = new ArrayList<>(valuesOrNull.size());
+        List<T> vs = new ArrayList<>(valuesOrNull.size());
+        for (var e : valuesOrNull.entrySet()) {
+            ks.add(Objects.requireNonNull(e.getKey()));
+            vs.add(e.getValue());
+        }
+        writeWithSidecar(sc, ks, vs, "applyAll failed");
+    }
+
+    @Override
+    public boolean delete(K key) {
+        IndexSidecar sc = this.sidecar;
+        if (sc == null) return super.delete(key);
+        Objects.requireNonNull(key);
+
+        try {
+            RocksSession s = currentSession();
+            byte[] pk = keyCodec.encodeKey(key);
+            List<Set<ByteArrayKey>> old;
+            try (ReadOptions ro = s.newReadOptions()) {
+                old = sc.decode(s.get(sc.cf(), ro, pk));
+            }
+            if (old == null) return super.delete(key); // no record: read and decode the row
+
+            RocksWriteBatch batch = newBatch();
+            batch.delete(primaryCf, pk);
+            diff(batch, pk, old, emptyKeys());
+            batch.delete(sc.cf(), pk);
+            s.write(batch);
+            return true;
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("delete failed", e);
+        }
+    }
+
+    /**
+     * Upserts (deletes, for a null value) using sidecar records for the old index keys; only rows without
+     * one are read and decoded.
+     */
+    private void writeWithSidecar(IndexSidecar sc, List<K> keys, List<T> values, String what) {
+        List<byte[]> pks = new ArrayList<>(keys.size());
+        for (K k : keys) pks.add(keyCodec.encodeKey(k));
+
+        try {
+            RocksSession s = currentSession();
+            List<List<Set<ByteArrayKey>>> olds = new ArrayList<>(keys.size());
+            List<Integer> unknown = new ArrayList<>();
+            try (ReadOptions ro = s.newReadOptions()) {
+                List<byte[]> records = s.multiGet(sc.cf(), ro, pks);
+                for (int i = 0; i < pks.size(); i++) {
+                    List<Set<ByteArrayKey>> old = sc.decode(records.get(i));
+                    olds.add(old);
+                    if (old == null) unknown.add(i);
+                }
+                if (!unknown.isEmpty()) {
+                    List<byte[]> ukeys = new ArrayList<>(unknown.size());
+                    for (int i : unknown) ukeys.add(pks.get(i));
+                    List<byte[]> rows = s.multiGet(primaryCf, ro, ukeys);
+                    for (int j = 0; j < unknown.size(); j++) {
+                        byte[] vb = rows.get(j);
+                        olds.set(unknown.get(j), valueKeys(vb == null ? null : valueCodec.decode(vb)));
+                    }
                 }
             }
-            // insert added
-            for (ByteArrayKey v : newKeys) {
-                if (!oldKeys.contains(v)) {
-                    batch.put(cf, IndexKeys.unique(v.bytes(), pk), EMPTY);
+
+            RocksWriteBatch batch = newBatch();
+            for (int i = 0; i < pks.size(); i++) {
+                byte[] pk = pks.get(i);
+                T value = values.get(i);
+                if (value == null) {
+                    batch.delete(primaryCf, pk);
+                    diff(batch, pk, olds.get(i), emptyKeys());
+                    batch.delete(sc.cf(), pk);
+                    continue;
                 }
+                List<Set<ByteArrayKey>> newKeys = valueKeys(value);
+                batch.put(primaryCf, pk, valueCodec.encode(value));
+                diff(batch, pk, olds.get(i), newKeys);
+                batch.put(sc.cf(), pk, sc.encode(newKeys));
             }
+            s.write(batch);
+        } catch (RocksDBException e) {
+            throw new RocksDaoException(what, e);
         }
     }
 
-    @Override
-    protected final void maintainIndexesOnDelete(RocksWriteBatch batch, K key, T oldValue)
+    /**
+     * Queues the index changes for a row going from {@code oldKeys} to {@code newKeys}. DIRECT entries
+     * are shared by value, so they are read first (the batch's own pending ops included): one is only
+     * deleted while it still points at this row, and a claim on one held by another row either fails
+     * (enforced) or takes it over.
+     */
+    private void diff(RocksWriteBatch batch, byte[] pk, List<Set<ByteArrayKey>> oldKeys, List<Set<ByteArrayKey>> newKeys)
             throws RocksDBException {
+        for (int i = 0; i < indexes.size(); i++) {
+            IndexDef<T> idx = indexes.get(i);
+            ColumnFamilyHandle cf = indexCf(idx);
+            boolean direct = idx.layout() == IndexDef.Layout.DIRECT;
+            Set<ByteArrayKey> o = oldKeys.get(i);
+            Set<ByteArrayKey> n = newKeys.get(i);
 
-        final byte[] pk = keyCodec.encodeKey(key);
-
-        for (IndexDef<T> idx : indexes) {
-            ColumnFamilyHandle cf = indexCfs.get(idx.name());
-            if (cf == null) throw new IllegalStateException("Missing index CF for " + idx.name());
-
-            for (byte[] v : idx.valueKeysOrEmpty(oldValue)) {
-                if (v == null) continue;
-                batch.delete(cf, IndexKeys.unique(v, pk));
+            // delete removed
+            for (ByteArrayKey v : o) {
+                if (n.contains(v)) continue;
+                if (direct && !Arrays.equals(owner(batch, cf, v.bytes()), pk)) continue;
+                batch.delete(cf, idx.entryKey(v.bytes(), pk));
             }
+            // insert added
+            for (ByteArrayKey v : n) {
+                if (o.contains(v)) continue;
+                if (direct && idx.enforceUnique()) {
+                    byte[] owner = owner(batch, cf, v.bytes());
+                    if (owner != null && !Arrays.equals(owner, pk)) throw new UniqueConstraintException(idx.name(), v.bytes());
+                }
+                batch.put(cf, idx.entryKey(v.bytes(), pk), idx.entryValue(pk));
+            }
+        }
+    }
+
+    /** The pk a DIRECT entry points at once {@code batch} is applied; locked when in a transaction. */
+    private byte[] owner(RocksWriteBatch batch, ColumnFamilyHandle cf, byte[] valueKey) throws RocksDBException {
+        RocksWriteBatch.Op op = batch.pending(cf, valueKey);
+        if (op instanceof RocksWriteBatch.Put p) return p.value();
+        if (op instanceof RocksWriteBatch.Delete) return null;
+        RocksSession s = currentSession();
+        try (ReadOptions ro = s.newReadOptions()) {
+            return s.getForUpdate(cf, ro, valueKey);
         }
     }
 
+    /** Value keys per index, in declaration order; all empty for null. */
+    private List<Set<ByteArrayKey>> valueKeys(T valueOrNull) {
+        List<Set<ByteArrayKey>> out = new ArrayList<>(indexes.size());
+        for (IndexDef<T> idx : indexes) out.add(toSet(idx.valueKeysOrEmpty(valueOrNull)));
+        return out;
+    }
+
+    private List<Set<ByteArrayKey>> emptyKeys() {
+        return Collections.nCopies(indexes.size(), Set.of());
+    }
+
+    private ColumnFamilyHandle indexCf(IndexDef<T> idx) {
+        ColumnFamilyHandle cf = indexCfs.get(idx.name());
+        if (cf == null) throw new IllegalStateException("Missing index CF for " + idx.name());
+        return cf;
+    }
+
     private static Set<ByteArrayKey> toSet(Iterable<byte[]> keys) {
         HashSet<ByteArrayKey> s = new HashSet<>();
         for (byte[] k : keys) {
@@ -0,0 +1,264 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDBException;
+
+import java.io.IOException;
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Copies relational tables into DAOs.
+ * <p>
+ * Each table is read through one forward-only, read-only cursor with a driver fetch size, inside a
+ * read-only transaction (autocommit off, which is what makes drivers such as PostgreSQL stream instead
+ * of materializing the result). Rows are mapped by a {@link RowMapper} (see the generated
+ * {@code *RowMapper} classes) and written either in {@link Dao#putAll} batches, which keep indexes
+ * consistent with existing data, or through a {@link BulkLoader} for empty targets.
+ * <p>
+ * Up to {@code parallelism} tables run at once, one thread each. Memory per table is bounded by the
+ * fetch size plus the write batch (or the loader's sort budget), so the total is bounded too.
+ */
+public final class JdbcMigrator {
+
+    /** Opens a source connection; called once per table. */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /** Where a table's rows go. */
+    public sealed interface Target<T, K> {
+        /** Upserts through the DAO, {@code batchSize} rows per write batch. */
+        record Batched<T, K>(Dao<T, K> dao, int batchSize) implements Target<T, K> {
+            public Batched {
+                Objects.requireNonNull(dao, "dao");
+                if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+            }
+        }
+
+        /** Sorts and ingests SST files; the target CFs should be empty. */
+        record Bulk<T, K>(BulkLoader<T, K> loader) implements Target<T, K> {
+            public Bulk {
+                Objects.requireNonNull(loader, "loader");
+            }
+        }
+    }
+
+    /** One source table: the query, how to map and key its rows, and where to write them. */
+    public record Table<T, K>(String name, String selectSql, int fetchSize, RowMapper<T> mapper,
+                              Function<? super T, ? extends K> keyOf, Target<T, K> target) {
+        public Table {
+            Objects.requireNonNull(name, "name");
+            Objects.requireNonNull(selectSql, "selectSql");
+            Objects.requireNonNull(mapper, "mapper");
+            Objects.requireNonNull(keyOf, "keyOf");
+            Objects.requireNonNull(target, "target");
+            if (fetchSize <= 0) throw new IllegalArgumentException("fetchSize must be > 0");
+        }
+
+        public static <T, K> Table<T, K> batched(String name, String selectSql, RowMapper<T> mapper,
+                                                 Function<? super T, ? extends K> keyOf, Dao<T, K> dao) {
+            return new Table<>(name, selectSql, 1_000, mapper, keyOf, new Target.Batched<>(dao, 1_000));
+        }
+
+        public static <T, K> Table<T, K> bulk(String name, String selectSql, RowMapper<T> mapper,
+                                              Function<? super T, ? extends K> keyOf, BulkLoader<T, K> loader) {
+            return new Table<>(name, selectSql, 1_000, mapper, keyOf, new Target.Bulk<>(loader));
+        }
+
+        public Table<T, K> withFetchSize(int n) {
+            return new Table<>(name, selectSql, n, mapper, keyOf, target);
+        }
+    }
+
+    /** Progress of one table; {@code done} is set on the last report for it. */
+    public record Progress(String table, long rows, Duration elapsed, boolean done) {
+        public double rowsPerSecond() {
+            long nanos = elapsed.toNanos();
+            return (nanos == 0) ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override public String toString() {
+            return "migrate " + table + ": " + rows + " rows in " + elapsed.toMillis() + "ms ("
+                    + Math.round(rowsPerSecond()) + " rows/s)" + (done ? " done" : "");
+        }
+    }
+
+    /** What a table migration did; {@code bulk} is null for batched targets. */
+    public record TableResult(String table, long rows, Duration elapsed, BulkLoader.Result bulk) {}
+
+    private static final System.Logger LOG = System.getLogger(JdbcMigrator.class.getName());
+
+    private final ConnectionSource source;
+    private final int parallelism;
+    private final long progressEvery;
+    private final Consumer<Progress> progress;
+
+    private JdbcMigrator(Builder b) {
+        this.source = Objects.requireNonNull(b.source, "source");
+        this.parallelism = Math.max(1, b.parallelism);
+        this.progressEvery = Math.max(1, b.progressEvery);
+        this.progress = Objects.requireNonNull(b.progress, "progress");
+    }
+
+    public static Builder builder(ConnectionSource source) { return new Builder(source); }
+
+    public static final class Builder {
+        private final ConnectionSource source;
+        private int parallelism = 4;
+        private long progressEvery = 100_000;
+        private Consumer<Progress> progress = p -> LOG.log(System.Logger.Level.INFO, p.toString());
+
+        private Builder(ConnectionSource source) { this.source = source; }
+
+        /** Tables migrated concurrently, each on its own connection. */
+        public Builder parallelism(int n) { this.parallelism = n; return this; }
+        /** Report after every n rows of a table, and once when it finishes. */
+        public Builder progressEvery(long n) { this.progressEvery = n; return this; }
+        /** Called from the table workers; must be thread-safe. */
+        public Builder progress(Consumer<Progress> c) { this.progress = c; return this; }
+        public JdbcMigrator build() { return new JdbcMigrator(this); }
+    }
+
+    /**
+     * Migrates all tables and returns their results in input order. The first failure cancels the tables
+     * still running and is rethrown; tables already finished stay written.
+     */
+    public List<TableResult> run(List<? extends Table<?, ?>> tables) throws SQLException, IOException, RocksDBException {
+        Objects.requireNonNull(tables);
+        if (tables.isEmpty()) return List.of();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, tables.size()), r -> {
+            Thread t = new Thread(r, "dbjo-migrate");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ExecutorCompletionService<TableResult> ecs = new ExecutorCompletionService<>(pool);
+            Map<Future<TableResult>, Integer> order = new HashMap<>();
+            for (int i = 0; i < tables.size(); i++) {
+                Table<?, ?> t = tables.get(i);
+                order.put(ecs.submit(() -> migrate(t)), i);
+            }
+            TableResult[] out = new TableResult[tables.size()];
+            for (int n = 0; n < tables.size(); n++) {
+                Future<TableResult> f = ecs.take();
+                out[order.get(f)] = f.get();
+            }
+            return List.of(out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("migration interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof SQLException se) throw se;
+            if (c instanceof IOException io) throw io;
+            if (c instanceof RocksDBException re) throw re;
+            if (c instanceof RuntimeException re) throw re;
+            throw new RocksDaoException("migration failed", c);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Migrates one table on the calling thread. */
+    public <T, K> TableResult migrate(Table<T, K> table) throws SQLException, IOException, RocksDBException {
+        long start = System.nanoTime();
+        try (Connection con = source.open()) {
+            con.setAutoCommit(false);
+            con.setReadOnly(true);
+            try (PreparedStatement ps = con.prepareStatement(table.selectSql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(table.fetchSize());
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.setFetchSize(table.fetchSize());
+                    Counter counter = new Counter(table.name(), start);
+                    BulkLoader.Result bulk = switch (table.target()) {
+                        case Target.Batched<T, K> b -> {
+                            copyBatched(rs, table, b, counter);
+                            yield null;
+                        }
+                        case Target.Bulk<T, K> b -> copyBulk(rs, table, b, counter);
+                    };
+                    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    progress.accept(new Progress(table.name(), counter.rows, elapsed, true));
+                    return new TableResult(table.name(), counter.rows, elapsed, bulk);
+                }
+            } finally {
+                con.rollback(); // read-only; just ends the cursor's transaction
+            }
+        }
+    }
+
+    private <T, K> void copyBatched(ResultSet rs, Table<T, K> table, Target.Batched<T, K> target, Counter counter)
+            throws SQLException {
+        Map<K, T> batch = new LinkedHashMap<>(target.batchSize() * 2);
+        while (rs.next()) {
+            T e = table.mapper().map(rs);
+            batch.put(table.keyOf().apply(e), e); // later duplicates win, as they would row by row
+            counter.increment();
+            if (batch.size() >= target.batchSize()) {
+                target.dao().putAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) target.dao().putAll(batch);
+    }
+
+    private <T, K> BulkLoader.Result copyBulk(ResultSet rs, Table<T, K> table, Target.Bulk<T, K> target,
+                                              Counter counter) throws SQLException, IOException, RocksDBException {
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) return false;
+                    T e = table.mapper().map(rs);
+                    counter.increment();
+                    action.accept(e);
+                    return true;
+                } catch (SQLException e) {
+                    throw new SourceFailure(e);
+                }
+            }
+        };
+        try (Stream<T> st = StreamSupport.stream(rows, false)) {
+            return target.loader().load(st, table.keyOf());
+        } catch (SourceFailure f) {
+            throw f.sql;
+        }
+    }
+
+    /** Row count for one table, reporting every {@code progressEvery} rows. Confined to the table's thread. */
+    private final class Counter {
+        private final String table;
+        private final long start;
+        private long rows;
+
+        Counter(String table, long start) {
+            this.table = table;
+            this.start = start;
+        }
+
+        void increment() {
+            if (++rows % progressEvery == 0) {
+                progress.accept(new Progress(table, rows, Duration.ofNanos(System.nanoTime() - start), false));
+            }
+        }
+    }
+
+    /** Carries a source error out of the bulk loader's stream. */
+    private static final class SourceFailure extends RuntimeException {
+        final SQLException sql;
+
+        SourceFailure(SQLException sql) {
+            super(sql);
+            this.sql = sql;
+        }
+    }
+}
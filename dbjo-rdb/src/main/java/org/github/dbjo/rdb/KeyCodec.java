@@ -7,4 +7,16 @@ public interface KeyCodec<K> {
     static KeyCodec<String> stringUtf8() {
         return KeyCodecs.stringUtf8();
     }
+
+    static KeyCodec<Integer> int32() {
+        return KeyCodecs.int32();
+    }
+
+    static KeyCodec<Long> int64() {
+        return KeyCodecs.orderedLong();
+    }
+
+    static KeyCodec<byte[]> bytes() {
+        return KeyCodecs.bytes();
+    }
 }
@@ -1,7 +1,15 @@
 package org.github.dbjo.rdb;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public final class KeyCodecs {
     private KeyCodecs() {}
@@ -26,4 +34,208 @@ public final class KeyCodecs {
             }
         };
     }
+
+    public static KeyCodec<Integer> int32() {
+        return of(Part.int32());
+    }
+
+    public static KeyCodec<byte[]> bytes() {
+        return new KeyCodec<>() {
+            @Override public byte[] encodeKey(byte[] key) { return key; }
+            @Override public byte[] decodeKey(byte[] bytes) { return bytes; }
+        };
+    }
+
+    /** A single-component key stored in the part's ordered form. */
+    public static <V> KeyCodec<V> of(Part<V> part) {
+        Objects.requireNonNull(part);
+        return new KeyCodec<>() {
+            @Override public byte[] encodeKey(V key) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+                part.write(Objects.requireNonNull(key), out);
+                return out.toByteArray();
+            }
+            @Override public V decodeKey(byte[] bytes) {
+                ByteBuffer in = ByteBuffer.wrap(bytes);
+                V v = part.read(in);
+                if (in.hasRemaining()) throw new IllegalArgumentException("Trailing bytes in key");
+                return v;
+            }
+        };
+    }
+
+    /**
+     * Composite key of the given parts, ordered by the first component, then the second, and so on.
+     * {@code toParts} and {@code fromParts} convert between the key type (usually a record) and its
+     * component values in part order.
+     */
+    public static <K> Tuple<K> tuple(Function<? super K, Object[]> toParts, Function<Object[], ? extends K> fromParts,
+                                     Part<?>... parts) {
+        return new Tuple<>(toParts, fromParts, parts);
+    }
+
+    /**
+     * Composite key codec. Each component encodes self-delimiting and order-preserving, so the
+     * encoding of leading components is a byte prefix of every key that starts with them: a key whose
+     * trailing components are null encodes as that prefix. {@link KeyRange#prefix} turns such a partial
+     * key into iterator bounds; as a plain range bound it sorts before every full key it prefixes.
+     */
+    public static final class Tuple<K> implements KeyCodec<K> {
+        private final Function<? super K, Object[]> toParts;
+        private final Function<Object[], ? extends K> fromParts;
+        private final Part<?>[] parts;
+
+        private Tuple(Function<? super K, Object[]> toParts, Function<Object[], ? extends K> fromParts, Part<?>[] parts) {
+            this.toParts = Objects.requireNonNull(toParts);
+            this.fromParts = Objects.requireNonNull(fromParts);
+            this.parts = parts.clone();
+            if (this.parts.length == 0) throw new IllegalArgumentException("No parts");
+            for (Part<?> p : this.parts) Objects.requireNonNull(p, "part");
+        }
+
+        @Override
+        public byte[] encodeKey(K key) {
+            return prefix(toParts.apply(key));
+        }
+
+        /** Encodes leading component values; stops at the first null, and nothing may follow it. */
+        public byte[] prefix(Object... values) {
+            if (values.length > parts.length) {
+                throw new IllegalArgumentException("Expected at most " + parts.length + " values, got " + values.length);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+            int n = 0;
+            while (n < values.length && values[n] != null) {
+                write(parts[n], values[n], out);
+                n++;
+            }
+            for (int i = n; i < values.length; i++) {
+                if (values[i] != null) throw new IllegalArgumentException("Only trailing key components may be null");
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public K decodeKey(byte[] keyBytes) {
+            ByteBuffer in = ByteBuffer.wrap(keyBytes);
+            Object[] values = new Object[parts.length];
+            for (int i = 0; i < parts.length; i++) values[i] = parts[i].read(in);
+            if (in.hasRemaining()) throw new IllegalArgumentException("Trailing bytes in key");
+            return fromParts.apply(values);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> void write(Part<V> part, Object v, ByteArrayOutputStream out) {
+            part.write((V) v, out);
+        }
+    }
+
+    /**
+     * One ordered, self-delimiting key component: fixed-width types are written big-endian with the
+     * sign bit flipped, variable-length ones escape 0x00 as 00 FF and end with 00 01.
+     */
+    public interface Part<V> {
+        void write(V v, ByteArrayOutputStream out);
+        V read(ByteBuffer in);
+
+        static Part<Short> int16() {
+            return fixed(Short.BYTES, (v, b) -> b.putShort((short) (v ^ Short.MIN_VALUE)), b -> (short) (b.getShort() ^ Short.MIN_VALUE));
+        }
+
+        static Part<Integer> int32() {
+            return fixed(Integer.BYTES, (v, b) -> b.putInt(v ^ Integer.MIN_VALUE), b -> b.getInt() ^ Integer.MIN_VALUE);
+        }
+
+        static Part<Long> int64() {
+            return fixed(Long.BYTES, (v, b) -> b.putLong(v ^ Long.MIN_VALUE), b -> b.getLong() ^ Long.MIN_VALUE);
+        }
+
+        static Part<Float> float32() {
+            return fixed(Integer.BYTES, (v, b) -> b.putInt(OrderedBytes.float32Bits(v)), b -> OrderedBytes.float32(b.getInt()));
+        }
+
+        static Part<Double> float64() {
+            return fixed(Long.BYTES, (v, b) -> b.putLong(OrderedBytes.float64Bits(v)), b -> OrderedBytes.float64(b.getLong()));
+        }
+
+        static Part<Boolean> bool() {
+            return fixed(1, (v, b) -> b.put((byte) (v ? 1 : 0)), b -> b.get() != 0);
+        }
+
+        static Part<UUID> uuid() {
+            return fixed(16, (v, b) -> b.putLong(v.getMostSignificantBits()).putLong(v.getLeastSignificantBits()),
+                    b -> new UUID(b.getLong(), b.getLong()));
+        }
+
+        static Part<Timestamp> timestamp() {
+            return fixed(12, (v, b) -> b.put(OrderedBytes.instant(Math.floorDiv(v.getTime(), 1000L), v.getNanos())), b -> {
+                long sec = b.getLong() ^ Long.MIN_VALUE;
+                Timestamp ts = new Timestamp(sec * 1000L);
+                ts.setNanos(b.getInt());
+                return ts;
+            });
+        }
+
+        static Part<java.sql.Date> date() {
+            return fixed(Long.BYTES, (v, b) -> b.putLong(v.getTime() ^ Long.MIN_VALUE), b -> new java.sql.Date(b.getLong() ^ Long.MIN_VALUE));
+        }
+
+        static Part<java.sql.Time> time() {
+            return fixed(Long.BYTES, (v, b) -> b.putLong(v.getTime() ^ Long.MIN_VALUE), b -> new java.sql.Time(b.getLong() ^ Long.MIN_VALUE));
+        }
+
+        static Part<Instant> instant() {
+            return fixed(12, (v, b) -> b.put(OrderedBytes.instant(v.getEpochSecond(), v.getNano())),
+                    b -> Instant.ofEpochSecond(b.getLong() ^ Long.MIN_VALUE, b.getInt()));
+        }
+
+        static Part<BigDecimal> decimal() {
+            return new Part<>() {
+                @Override public void write(BigDecimal v, ByteArrayOutputStream out) { out.writeBytes(OrderedBytes.decimal(v, true)); }
+                @Override public BigDecimal read(ByteBuffer in) { return OrderedBytes.readDecimal(in); }
+            };
+        }
+
+        static Part<String> text() {
+            Part<byte[]> raw = bytes();
+            return new Part<>() {
+                @Override public void write(String v, ByteArrayOutputStream out) { raw.write(v.getBytes(StandardCharsets.UTF_8), out); }
+                @Override public String read(ByteBuffer in) { return new String(raw.read(in), StandardCharsets.UTF_8); }
+            };
+        }
+
+        static Part<byte[]> bytes() {
+            return new Part<>() {
+                @Override public void write(byte[] v, ByteArrayOutputStream out) {
+                    for (byte b : v) {
+                        out.write(b);
+                        if (b == 0) out.write(0xFF);
+                    }
+                    out.write(0);
+                    out.write(1);
+                }
+
+                @Override public byte[] read(ByteBuffer in) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    while (true) {
+                        byte b = in.get();
+                        if (b != 0) { out.write(b); continue; }
+                        if (in.get() == 1) return out.toByteArray(); // 00 01 ends, 00 FF is a zero byte
+                        out.write(0);
+                    }
+                }
+            };
+        }
+
+        private static <V> Part<V> fixed(int width, BiConsumer<V, ByteBuffer> put, Function<ByteBuffer, V> get) {
+            return new Part<>() {
+                @Override public void write(V v, ByteArrayOutputStream out) {
+                    ByteBuffer b = ByteBuffer.allocate(width);
+                    put.accept(v, b);
+                    out.writeBytes(b.array());
+                }
+                @Override public V read(ByteBuffer in) { return get.apply(in); }
+            };
+        }
+    }
 }
@@ -2,7 +2,15 @@ package org.github.dbjo.rdb;
 
 import java.util.Optional;
 
-public record KeyRange<K>(K from, boolean fromInclusive, K to, boolean toInclusive) {
+/**
+ * Bounds of a primary-key scan. With {@code prefix} set, {@code from} is a partial key (see
+ * {@link KeyCodecs.Tuple}) and the range is every key whose encoding starts with it.
+ */
+public record KeyRange<K>(K from, boolean fromInclusive, K to, boolean toInclusive, boolean prefix) {
+
+    public KeyRange(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        this(from, fromInclusive, to, toInclusive, false);
+    }
 
     /** Convenience: Optional bounds, inclusive by default. */
     public KeyRange(Optional<? extends K> from, Optional<? extends K> to) {
@@ -24,6 +32,11 @@ public record KeyRange<K>(K from, boolean fromInclusive, K to, boolean toInclusi
         return new KeyRange<>(fromInclusive, true, toExclusive, false);
     }
 
+    /** Every key starting with {@code partialKey}, e.g. all rows of one client in a (client, time, id) key. */
+    public static <K> KeyRange<K> prefix(K partialKey) {
+        return new KeyRange<>(java.util.Objects.requireNonNull(partialKey), true, null, false, true);
+    }
+
     public static <K> KeyRange<K> all() {
         return new KeyRange<>(null, true, null, true);
     }
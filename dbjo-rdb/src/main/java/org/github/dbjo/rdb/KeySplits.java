@@ -0,0 +1,32 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.util.*;
+
+/** Cuts a CF's key space into roughly even ranges for parallel scans, using SST file boundaries. */
+final class KeySplits {
+    private KeySplits() {}
+
+    /**
+     * Up to {@code splits - 1} increasing cut points; range i is [cut(i-1), cut(i)), open at both ends.
+     * Data still in memtables is not sampled, so a freshly written CF may come back as one range.
+     */
+    static List<byte[]> cutPoints(RocksDB db, ColumnFamilyHandle cf, int splits) throws RocksDBException {
+        byte[] cfName = cf.getName();
+        List<byte[]> bounds = new ArrayList<>();
+        for (LiveFileMetaData f : db.getLiveFilesMetaData()) {
+            if (Arrays.equals(f.columnFamilyName(), cfName)) bounds.add(f.smallestKey());
+        }
+        bounds.sort(ByteArrays::compare);
+
+        List<byte[]> cuts = new ArrayList<>();
+        if (splits > 1 && bounds.size() > 1) {
+            for (int i = 1; i < splits; i++) {
+                byte[] b = bounds.get((int) ((long) i * bounds.size() / splits));
+                if (cuts.isEmpty() || ByteArrays.compare(cuts.get(cuts.size() - 1), b) < 0) cuts.add(b);
+            }
+        }
+        return cuts;
+    }
+}
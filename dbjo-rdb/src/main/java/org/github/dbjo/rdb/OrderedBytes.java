@@ -0,0 +1,81 @@
+package org.github.dbjo.rdb;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Order-preserving byte layouts shared by {@link IndexKeyCodecs} and {@link KeyCodecs}. */
+final class OrderedBytes {
+    private OrderedBytes() {}
+
+    private static final byte DEC_NEG = 0x10;
+    private static final byte DEC_ZERO = 0x20;
+    private static final byte DEC_POS = 0x30;
+
+    static long float64Bits(double v) {
+        long bits = Double.doubleToLongBits(v == 0.0 ? 0.0 : v); // -0.0 -> 0.0
+        return (bits < 0) ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    static double float64(long ordered) {
+        long bits = (ordered < 0) ? ordered ^ Long.MIN_VALUE : ~ordered;
+        return Double.longBitsToDouble(bits);
+    }
+
+    static int float32Bits(float v) {
+        int bits = Float.floatToIntBits(v == 0.0f ? 0.0f : v);
+        return (bits < 0) ? ~bits : bits ^ Integer.MIN_VALUE;
+    }
+
+    static float float32(int ordered) {
+        int bits = (ordered < 0) ? ordered ^ Integer.MIN_VALUE : ~ordered;
+        return Float.intBitsToFloat(bits);
+    }
+
+    /** Epoch second (sign-flipped) then nanos: 12 bytes. */
+    static byte[] instant(long epochSecond, int nanos) {
+        return ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+                .putLong(epochSecond ^ Long.MIN_VALUE)
+                .putInt(nanos)
+                .array();
+    }
+
+    /**
+     * Sign class, then exponent and digits of 0.d1d2...dn x 10^e (trailing zeros stripped). Negatives
+     * store the exponent and digits inverted plus a 0xFF terminator, so larger magnitudes sort lower.
+     * With {@code terminated}, positives end in 0x00 so the encoding is self-delimiting.
+     */
+    static byte[] decimal(BigDecimal v, boolean terminated) {
+        if (v.signum() == 0) return new byte[]{DEC_ZERO};
+        BigDecimal s = v.stripTrailingZeros();
+        byte[] digits = s.unscaledValue().abs().toString().getBytes(StandardCharsets.US_ASCII);
+        int exp = digits.length - s.scale();
+        boolean neg = v.signum() < 0;
+
+        ByteBuffer out = ByteBuffer.allocate(1 + Integer.BYTES + digits.length + ((neg || terminated) ? 1 : 0));
+        out.put(neg ? DEC_NEG : DEC_POS);
+        out.putInt(neg ? ~(exp ^ Integer.MIN_VALUE) : exp ^ Integer.MIN_VALUE);
+        for (byte d : digits) out.put(neg ? (byte) (0xFF - d) : d);
+        if (neg) out.put((byte) 0xFF);
+        else if (terminated) out.put((byte) 0);
+        return out.array();
+    }
+
+    /** Reads what {@code decimal(v, true)} wrote. */
+    static BigDecimal readDecimal(ByteBuffer in) {
+        byte cls = in.get();
+        if (cls == DEC_ZERO) return BigDecimal.ZERO;
+        boolean neg = cls == DEC_NEG;
+        int e = in.getInt();
+        int exp = (neg ? ~e : e) ^ Integer.MIN_VALUE;
+        StringBuilder digits = new StringBuilder();
+        while (true) {
+            int b = in.get() & 0xFF;
+            if (b == (neg ? 0xFF : 0x00)) break;
+            digits.append((char) (neg ? 0xFF - b : b));
+        }
+        BigDecimal abs = new BigDecimal(new BigInteger(digits.toString()), digits.length() - exp);
+        return neg ? abs.negate() : abs;
+    }
+}
@@ -0,0 +1,130 @@
+package org.github.dbjo.rdb;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataLoader-style coalescing of point reads into {@code multiGet} batches.
+ * <p>
+ * {@link #load} queues a key; the queue is served by one multiGet when it reaches {@code maxBatch}
+ * distinct keys, when {@code window} has passed since the first queued key, or when {@link #dispatch()}
+ * is called (request-scoped use: issue all loads, then dispatch). Duplicate keys are fetched once, but
+ * each caller decodes its own entity, so callers never share a mutable instance.
+ * <p>
+ * Batches read in auto-commit sessions. {@link AbstractRocksDao#findByKey} bypasses the batcher
+ * inside a transaction, where reads must see the transaction's own writes.
+ */
+public final class PointReadBatcher<T, K> {
+
+    private static final ScheduledExecutorService WINDOW_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dbjo-read-batcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AbstractRocksDao<T, K> dao;
+    private final long windowNanos;
+    private final int maxBatch;
+
+    private final Object lock = new Object();
+    private Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> timer;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder keysFetched = new LongAdder();
+
+    PointReadBatcher(AbstractRocksDao<T, K> dao, Duration window, int maxBatch) {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be > 0");
+        this.dao = Objects.requireNonNull(dao);
+        this.windowNanos = Objects.requireNonNull(window).toNanos();
+        this.maxBatch = maxBatch;
+    }
+
+    public CompletableFuture<Optional<T>> load(K key) {
+        Objects.requireNonNull(key);
+        CompletableFuture<Optional<T>> f = new CompletableFuture<>();
+        ByteArrayKey kb = new ByteArrayKey(dao.keyCodec.encodeKey(key));
+        loads.increment();
+
+        Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> full = null;
+        synchronized (lock) {
+            pending.computeIfAbsent(kb, k -> new ArrayList<>(1)).add(f);
+            if (pending.size() >= maxBatch) {
+                full = takePending();
+            } else if (timer == null && windowNanos > 0) {
+                timer = WINDOW_TIMER.schedule(this::onWindowElapsed, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (full != null) fetch(full); // the caller is about to wait anyway
+        else if (windowNanos <= 0) dispatch();
+        return f;
+    }
+
+    /** Serves everything queued so far on the calling thread. */
+    public void dispatch() {
+        Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) fetch(batch);
+    }
+
+    /** Point reads requested through the batcher. */
+    public long loads() { return loads.sum(); }
+
+    /** multiGet calls issued; loads() / batches() is the achieved coalescing factor. */
+    public long batches() { return batches.sum(); }
+
+    /** Distinct keys fetched (loads minus duplicates served by the same fetch). */
+    public long keysFetched() { return keysFetched.sum(); }
+
+    private void onWindowElapsed() {
+        Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> batch;
+        synchronized (lock) {
+            timer = null;
+            batch = takePending();
+        }
+        // keep the timer thread free; the multiGet runs on its own virtual thread
+        if (!batch.isEmpty()) Thread.ofVirtual().name("dbjo-read-batch").start(() -> fetch(batch));
+    }
+
+    private Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> takePending() {
+        Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        return batch;
+    }
+
+    private void fetch(Map<ByteArrayKey, List<CompletableFuture<Optional<T>>>> batch) {
+        List<byte[]> keys = new ArrayList<>(batch.size());
+        for (ByteArrayKey k : batch.keySet()) keys.add(k.bytes());
+
+        List<byte[]> values;
+        try {
+            values = dao.multiGetBytes(keys);
+        } catch (RuntimeException e) {
+            for (var waiters : batch.values()) for (var f : waiters) f.completeExceptionally(e);
+            return;
+        }
+        batches.increment();
+        keysFetched.add(keys.size());
+
+        int i = 0;
+        for (var waiters : batch.values()) {
+            byte[] vb = values.get(i++);
+            for (var f : waiters) {
+                try {
+                    f.complete(vb == null ? Optional.empty() : Optional.of(dao.valueCodec.decode(vb)));
+                } catch (RuntimeException e) {
+                    f.completeExceptionally(e);
+                }
+            }
+        }
+    }
+}
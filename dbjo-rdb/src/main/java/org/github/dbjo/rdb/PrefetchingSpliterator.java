@@ -0,0 +1,142 @@
+package org.github.dbjo.rdb;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Pipelined scan: a virtual-thread worker opens and drives a {@link DaoSpliterator}, handing batches
+ * to the consumer through a bounded queue (the ring buffer). The worker owns the iterator for its whole
+ * life, so the scan must not depend on a thread-bound transaction (see {@link AbstractRocksDao#stream}).
+ */
+final class PrefetchingSpliterator<K, T> implements Spliterator<Map.Entry<K, T>>, AutoCloseable {
+
+    /** One unit of hand-off; rows are either raw {@code byte[][]{pk, value}} or decoded entries. */
+    private record Batch(List<Object> rows, boolean last, Throwable error) {}
+
+    private final Query.Prefetch cfg;
+    private final BlockingQueue<Batch> buffer;
+    private final Thread worker;
+
+    // consumer-side state
+    private DaoSpliterator<K, T> sp; // set by the worker; used by the consumer only to decode
+    private List<Object> current = List.of();
+    private int pos;
+    private boolean finished;
+    private volatile boolean closed;
+
+    PrefetchingSpliterator(Supplier<DaoSpliterator<K, T>> opener, Query.Prefetch cfg) {
+        this.cfg = Objects.requireNonNull(cfg);
+        this.buffer = new ArrayBlockingQueue<>(cfg.depth());
+        this.worker = Thread.ofVirtual().name("dbjo-prefetch").start(() -> produce(opener));
+    }
+
+    private void produce(Supplier<DaoSpliterator<K, T>> opener) {
+        DaoSpliterator<K, T> s = null;
+        Throwable failure = null;
+        boolean ended = false;
+        try {
+            s = opener.get();
+            synchronized (this) { sp = s; }
+            while (!closed) {
+                List<Object> rows = new ArrayList<>(cfg.batchSize());
+                boolean more = true;
+                while (rows.size() < cfg.batchSize() && (more = s.advanceRaw())) {
+                    rows.add(cfg.decodeInWorker()
+                            ? s.decode(s.rowKey(), s.rowValue())
+                            : new byte[][]{s.rowKey(), s.rowValue()});
+                }
+                buffer.put(new Batch(rows, !more, null));
+                if (!more) {
+                    ended = true;
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            ended = true; // closed by the consumer
+        } catch (Throwable t) {
+            failure = t; // Errors too (e.g. a decoder overflowing the stack): handed to the consumer
+        } finally {
+            try {
+                if (!ended) endOfStream(failure); // whatever happened, the consumer must not wait forever
+            } finally {
+                if (s != null) s.close();
+            }
+        }
+    }
+
+    private void endOfStream(Throwable failure) {
+        if (closed) return;
+        try {
+            buffer.put(new Batch(List.of(), true, failure));
+        } catch (InterruptedException ignored) {
+            // closed by the consumer meanwhile
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map.Entry<K, T>> action) {
+        while (pos >= current.size()) {
+            if (finished || closed) return false;
+            Batch b;
+            try {
+                b = buffer.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            }
+            if (b.error() != null) {
+                finished = true;
+                throw rethrow(b.error());
+            }
+            current = b.rows();
+            pos = 0;
+            finished = b.last();
+        }
+        action.accept(entry(current.get(pos++)));
+        return true;
+    }
+
+    /** The worker's failure, as itself on this thread. */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof Error e) throw e;
+        if (t instanceof RuntimeException re) return re;
+        return new RocksDaoException("prefetch worker failed", t);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map.Entry<K, T> entry(Object row) {
+        if (row instanceof byte[][] raw) {
+            DaoSpliterator<K, T> s;
+            synchronized (this) { s = sp; }
+            return s.decode(raw[0], raw[1]);
+        }
+        return (Map.Entry<K, T>) row;
+    }
+
+    @Override public Spliterator<Map.Entry<K, T>> trySplit() { return null; }
+    @Override public long estimateSize() { return Long.MAX_VALUE; }
+    @Override public int characteristics() { return ORDERED | NONNULL; }
+
+    /** Stops the worker and waits for it to close the iterator. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        worker.interrupt();
+        buffer.clear();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                worker.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -56,6 +56,12 @@ public final class ProtobufPojoCodec<P, M extends MessageLite> implements Codec<
         return msg.toByteArray();
     }
 
+    /** Protobuf parses concatenated messages as one merged message. */
+    @Override
+    public boolean mergesByConcatenation() {
+        return true;
+    }
+
     @Override
     public P decode(byte[] bytes) {
         try {
@@ -6,7 +6,8 @@ public record Query<K>(
         Optional<KeyRange<K>> keyRange,
         List<IndexPredicate> indexPredicates,
         int limit,
-        boolean descending
+        boolean descending,
+        Prefetch prefetch // null -> scan on the consumer's thread
 ) {
     public Query {
         if (limit <= 0) limit = Integer.MAX_VALUE;
@@ -14,6 +15,22 @@ public record Query<K>(
         keyRange = (keyRange == null) ? Optional.empty() : keyRange;
     }
 
+    public Query(Optional<KeyRange<K>> keyRange, List<IndexPredicate> indexPredicates, int limit, boolean descending) {
+        this(keyRange, indexPredicates, limit, descending, null);
+    }
+
+    /**
+     * Read-ahead for long sequential scans: a background worker reads batches of {@code batchSize} rows
+     * into a buffer of {@code depth} batches while the consumer works on earlier ones. With
+     * {@code decodeInWorker} the worker also decodes entities, otherwise the consumer decodes.
+     */
+    public record Prefetch(int batchSize, int depth, boolean decodeInWorker) {
+        public Prefetch {
+            if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+            if (depth <= 0) throw new IllegalArgumentException("depth must be > 0");
+        }
+    }
+
     public static <K> Builder<K> builder() { return new Builder<>(); }
 
     public static final class Builder<K> {
@@ -21,11 +38,16 @@ public record Query<K>(
         private final List<IndexPredicate> preds = new ArrayList<>();
         private int limit = Integer.MAX_VALUE;
         private boolean desc = false;
+        private Prefetch prefetch;
 
         public Builder<K> range(KeyRange<K> r) { this.range = r; return this; }
         public Builder<K> where(IndexPredicate p) { this.preds.add(p); return this; }
         public Builder<K> limit(int n) { this.limit = n; return this; }
         public Builder<K> descending(boolean d) { this.desc = d; return this; }
-        public Query<K> build() { return new Query<>(Optional.ofNullable(range), preds, limit, desc); }
+        public Builder<K> prefetch(Prefetch p) { this.prefetch = p; return this; }
+        public Builder<K> prefetch(int batchSize, int depth, boolean decodeInWorker) {
+            return prefetch(new Prefetch(batchSize, depth, decodeInWorker));
+        }
+        public Query<K> build() { return new Query<>(Optional.ofNullable(range), preds, limit, desc, prefetch); }
     }
 }
@@ -0,0 +1,112 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDB;
+import org.rocksdb.Snapshot;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * One consistent, read-only view of the whole DB, without a transaction: a single RocksDB snapshot that
+ * any number of DAOs, streams and threads read through.
+ * <pre>{@code
+ * try (ReadView view = ReadView.open(db)) {
+ *     long users = view.call(() -> userDao.approximateSize());
+ *     try (var orders = view.stream(orderDao, query)) { ... }   // same snapshot
+ * }
+ * }</pre>
+ * {@link #call} / {@link #run} bind the view to the calling thread for the duration, so DAOs built on
+ * {@link SpringRocksSessions} read at its snapshot; worker threads of a parallel scan each call
+ * {@code view.call(...)}. Writes made through it fail, and a Spring transaction started inside it joins it
+ * (read-only). Reference-counted: {@link #open} holds one reference (dropped by {@link #close}),
+ * {@link #retain} and every stream from {@link #stream} one more each, and the snapshot is released with
+ * the last one.
+ */
+public final class ReadView implements AutoCloseable {
+
+    private final RocksDB db;
+    private final Snapshot snapshot;
+    private final SnapshotSession session;
+    private final AtomicInteger refs = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean(); // the reference open() handed out
+
+    private ReadView(RocksDB db) {
+        this.db = db;
+        this.snapshot = db.getSnapshot();
+        this.session = new SnapshotSession(db, snapshot, () -> { }); // its lifetime is the view's
+    }
+
+    public static ReadView open(RocksDB db) {
+        return new ReadView(Objects.requireNonNull(db));
+    }
+
+    /** The view's session, for code that talks to {@link RocksSession} directly. */
+    public RocksSession session() {
+        requireOpen();
+        return session;
+    }
+
+    /** Runs {@code work} with this view bound to the calling thread (re-entrant). */
+    public <R> R call(Supplier<R> work) {
+        Object bound = TransactionSynchronizationManager.getResource(RocksDbTransactionManager.Keys.TXN);
+        if (bound == session) return work.get();
+        if (bound != null) throw new IllegalStateException("A transaction is already bound to this thread");
+        retain();
+        TransactionSynchronizationManager.bindResource(RocksDbTransactionManager.Keys.TXN, session);
+        try {
+            return work.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(RocksDbTransactionManager.Keys.TXN);
+            TransactionSynchronizationManager.unbindResourceIfPossible(RocksDbTransactionManager.SAVEPOINTS); // left by nested scopes
+            release();
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> { work.run(); return null; });
+    }
+
+    /** {@code dao.stream(q)} at this view; the stream holds a reference until it is closed, on any thread. */
+    public <T, K> Stream<Map.Entry<K, T>> stream(AbstractRocksDao<T, K> dao, Query<K> q) {
+        Stream<Map.Entry<K, T>> st = call(() -> dao.stream(q));
+        retain();
+        return st.onClose(this::release);
+    }
+
+    /** Adds a reference, to be dropped with {@link #release()}; fails once the snapshot is released. */
+    public ReadView retain() {
+        int n;
+        do {
+            n = refs.get();
+            if (n <= 0) throw new IllegalStateException("Read view is closed");
+        } while (!refs.compareAndSet(n, n + 1));
+        return this;
+    }
+
+    /** Drops the reference {@link #open} returned (once, however often called). */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) release();
+    }
+
+    /** The snapshot's sequence number: what the view sees is every write up to it. */
+    public long sequenceNumber() {
+        return snapshot.getSequenceNumber();
+    }
+
+    /** Drops a reference taken with {@link #retain}; the last one releases the snapshot. */
+    public void release() {
+        int n = refs.decrementAndGet();
+        if (n == 0) db.releaseSnapshot(snapshot);
+        if (n < 0) throw new IllegalStateException("Read view released more often than retained");
+    }
+
+    private void requireOpen() {
+        if (refs.get() <= 0) throw new IllegalStateException("Read view is closed");
+    }
+}
@@ -0,0 +1,44 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.Status;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters of conflict retries: how often atomic updates lost a lock or validation race, and how often they gave up. */
+public final class RetryMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder tryAgain = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    void recordCall() { calls.increment(); }
+    void recordRetry() { retries.increment(); }
+    void recordExhausted() { exhausted.increment(); }
+
+    void recordConflict(Status.Code code) {
+        switch (code) {
+            case Busy -> busy.increment();
+            case TimedOut -> timedOut.increment();
+            default -> tryAgain.increment();
+        }
+    }
+
+    /** Operations run. */
+    public long calls() { return calls.sum(); }
+    /** Extra attempts after a conflict. */
+    public long retries() { return retries.sum(); }
+    /** Conflicts by status: Busy is a failed validation (or deadlock), TimedOut a lock wait that ran out. */
+    public long busy() { return busy.sum(); }
+    public long timedOut() { return timedOut.sum(); }
+    public long tryAgain() { return tryAgain.sum(); }
+    /** Operations that still conflicted on their last attempt and failed. */
+    public long exhausted() { return exhausted.sum(); }
+
+    @Override
+    public String toString() {
+        return "RetryMetrics[calls=" + calls() + ", retries=" + retries() + ", busy=" + busy() + ", timedOut=" + timedOut()
+                + ", tryAgain=" + tryAgain() + ", exhausted=" + exhausted() + "]";
+    }
+}
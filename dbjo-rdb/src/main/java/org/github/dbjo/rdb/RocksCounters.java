@@ -0,0 +1,125 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Signed 64-bit counters in a CF opened with {@link RocksSchema.Merge#UINT64_ADD}. {@link #add} writes
+ * the delta as a merge operand, without reading the counter: concurrent increments of a hot key neither
+ * conflict nor lock outside a transaction, and RocksDB sums the operands on read and compaction. Inside
+ * a transaction the merge is a write like any other, so it locks (or is validated on) the key.
+ * <p>
+ * A counter lives outside any entity value, keyed like (or alongside) the row it counts, so no index
+ * sees it: updating one never touches index CFs. An absent counter reads as 0; sums wrap on overflow.
+ */
+public final class RocksCounters<K> {
+
+    private final RocksSessions sessions;
+    private final ColumnFamilyHandle cf;
+    private final KeyCodec<K> keyCodec;
+    private volatile Durability durability;
+
+    public RocksCounters(RocksSessions sessions, ColumnFamilyHandle cf, KeyCodec<K> keyCodec) {
+        this.sessions = Objects.requireNonNull(sessions);
+        this.cf = Objects.requireNonNull(cf);
+        this.keyCodec = Objects.requireNonNull(keyCodec);
+    }
+
+    public void increment(K key) {
+        add(key, 1);
+    }
+
+    /** Adds {@code delta} (may be negative). */
+    public void add(K key, long delta) {
+        Objects.requireNonNull(key);
+        write(Map.of(key, delta), "add failed");
+    }
+
+    /** All deltas in one write. */
+    public void addAll(Map<K, Long> deltas) {
+        Objects.requireNonNull(deltas);
+        if (!deltas.isEmpty()) write(deltas, "addAll failed");
+    }
+
+    public long get(K key) {
+        Objects.requireNonNull(key);
+        try {
+            RocksSession s = sessions.current();
+            try (ReadOptions ro = s.newReadOptions()) {
+                return decode(s.get(cf, ro, keyCodec.encodeKey(key)));
+            }
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("get failed", e);
+        }
+    }
+
+    /** One multiGet; every key is in the result, absent ones as 0, in the order of {@code keys}. */
+    public Map<K, Long> getAll(Collection<K> keys) {
+        Objects.requireNonNull(keys);
+        List<K> ks = List.copyOf(keys);
+        List<byte[]> kbs = new ArrayList<>(ks.size());
+        for (K k : ks) kbs.add(keyCodec.encodeKey(k));
+        Map<K, Long> out = new LinkedHashMap<>();
+        if (ks.isEmpty()) return out;
+        try {
+            RocksSession s = sessions.current();
+            List<byte[]> vbs;
+            try (ReadOptions ro = s.newReadOptions()) {
+                vbs = s.multiGet(cf, ro, kbs);
+            }
+            for (int i = 0; i < ks.size(); i++) out.put(ks.get(i), decode(vbs.get(i)));
+            return out;
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("getAll failed", e);
+        }
+    }
+
+    /** Deletes the counter, so it reads as 0 again. */
+    public void reset(K key) {
+        Objects.requireNonNull(key);
+        try {
+            RocksWriteBatch batch = newBatch();
+            batch.delete(cf, keyCodec.encodeKey(key));
+            sessions.current().write(batch);
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("reset failed", e);
+        }
+    }
+
+    /** Default durability of auto-commit counter writes; null leaves it to the session (WAL). */
+    public void setDurability(Durability d) {
+        this.durability = d;
+    }
+
+    private void write(Map<K, Long> deltas, String what) {
+        try {
+            RocksWriteBatch batch = newBatch();
+            for (var e : deltas.entrySet()) {
+                batch.merge(cf, keyCodec.encodeKey(Objects.requireNonNull(e.getKey())), encode(e.getValue()));
+            }
+            sessions.current().write(batch);
+        } catch (RocksDBException e) {
+            throw new RocksDaoException(what, e);
+        }
+    }
+
+    private RocksWriteBatch newBatch() {
+        return new RocksWriteBatch().durability(Durability.scopedOr(durability));
+    }
+
+    /** uint64add's format: fixed 8 bytes, little-endian. */
+    private static byte[] encode(long v) {
+        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(v).array();
+    }
+
+    private static long decode(byte[] b) {
+        if (b == null) return 0L;
+        if (b.length != Long.BYTES) throw new IllegalStateException("Not a uint64add counter value (" + b.length + " bytes)");
+        return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+}
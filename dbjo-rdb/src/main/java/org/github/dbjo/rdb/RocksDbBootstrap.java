@@ -25,23 +25,49 @@ public final class RocksDbBootstrap {
             }
         }
 
+        Map<String, RocksSchema.Merge> merges = new HashMap<>();
+        for (RocksSchema s : schemas) {
+            for (var e : s.mergeOperators().entrySet()) {
+                RocksSchema.Merge prev = merges.putIfAbsent(e.getKey(), e.getValue());
+                if (prev != null && prev != e.getValue()) {
+                    throw new IllegalArgumentException("CF " + e.getKey() + " declared with merge operators " + prev + " and " + e.getValue());
+                }
+            }
+        }
+
         // keep these alive for DB lifetime (RocksDbHandle closes them)
         ColumnFamilyOptions cfOpts = new ColumnFamilyOptions();
         DBOptions dbOpts = new DBOptions()
                 .setCreateIfMissing(true)
                 .setCreateMissingColumnFamilies(true);
-
-        TransactionDBOptions txOpts = new TransactionDBOptions();
+        List<AutoCloseable> owned = new ArrayList<>();
+        Map<RocksSchema.Merge, ColumnFamilyOptions> mergeCfOpts = new EnumMap<>(RocksSchema.Merge.class);
 
         List<ColumnFamilyDescriptor> desc = new ArrayList<>();
         desc.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, cfOpts));
         for (String n : names) {
             if ("default".equals(n)) continue;
-            desc.add(new ColumnFamilyDescriptor(n.getBytes(StandardCharsets.UTF_8), cfOpts));
+            RocksSchema.Merge m = merges.get(n);
+            ColumnFamilyOptions o = (m == null) ? cfOpts : mergeCfOpts.computeIfAbsent(m, k -> {
+                MergeOperator op = switch (k) {
+                    case UINT64_ADD -> new UInt64AddOperator();
+                    case CONCAT -> new StringAppendOperator("");
+                };
+                ColumnFamilyOptions withOp = new ColumnFamilyOptions(cfOpts).setMergeOperator(op);
+                owned.add(withOp);
+                owned.add(op);
+                return withOp;
+            });
+            desc.add(new ColumnFamilyDescriptor(n.getBytes(StandardCharsets.UTF_8), o));
         }
 
         List<ColumnFamilyHandle> handles = new ArrayList<>(desc.size());
-        TransactionDB db = TransactionDB.open(dbOpts, txOpts, props.path(), desc, handles);
+        TransactionDBOptions txOpts = (props.engine() == RocksProps.Engine.PESSIMISTIC) ? new TransactionDBOptions() : null;
+        RocksDB db = switch (props.engine()) {
+            case PESSIMISTIC -> TransactionDB.open(dbOpts, txOpts, props.path(), desc, handles);
+            case OPTIMISTIC -> OptimisticTransactionDB.open(dbOpts, props.path(), desc, handles);
+            case PLAIN -> RocksDB.open(dbOpts, props.path(), desc, handles);
+        };
 
         Map<String, ColumnFamilyHandle> cfByName = new HashMap<>();
         for (int i = 0; i < desc.size(); i++) {
@@ -52,7 +78,7 @@ public final class RocksDbBootstrap {
             cfByName.put(n, handles.get(i));
         }
 
-        return new RocksDbHandle(db, dbOpts, txOpts, cfOpts, handles, Map.copyOf(cfByName));
+        return new RocksDbHandle(db, props.engine(), dbOpts, txOpts, cfOpts, handles, Map.copyOf(cfByName), owned);
     }
 
     private static void destroyIfExists(Path dir) {
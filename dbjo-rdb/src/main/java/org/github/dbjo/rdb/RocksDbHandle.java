@@ -5,10 +5,12 @@ import org.rocksdb.*;
 import java.util.*;
 
 public final class RocksDbHandle implements AutoCloseable {
-    private final TransactionDB db;
+    private final RocksDB db;
+    private final RocksProps.Engine engine;
     private final DBOptions dbOptions;
-    private final TransactionDBOptions txOptions;
+    private final TransactionDBOptions txOptions; // PESSIMISTIC only
     private final ColumnFamilyOptions cfOptions;
+    private final List<AutoCloseable> owned; // per-CF options and merge operators
 
     private final List<ColumnFamilyHandle> handles;
     private final Map<String, ColumnFamilyHandle> cfByName;
@@ -19,18 +21,47 @@ public final class RocksDbHandle implements AutoCloseable {
                          ColumnFamilyOptions cfOptions,
                          List<ColumnFamilyHandle> handles,
                          Map<String, ColumnFamilyHandle> cfByName) {
+        this(db, RocksProps.Engine.PESSIMISTIC, dbOptions, txOptions, cfOptions, handles, cfByName);
+    }
+
+    public RocksDbHandle(RocksDB db,
+                         RocksProps.Engine engine,
+                         DBOptions dbOptions,
+                         TransactionDBOptions txOptionsOrNull,
+                         ColumnFamilyOptions cfOptions,
+                         List<ColumnFamilyHandle> handles,
+                         Map<String, ColumnFamilyHandle> cfByName) {
+        this(db, engine, dbOptions, txOptionsOrNull, cfOptions, handles, cfByName, List.of());
+    }
+
+    /** {@code owned} are further native objects the DB uses, closed after it (in order). */
+    public RocksDbHandle(RocksDB db,
+                         RocksProps.Engine engine,
+                         DBOptions dbOptions,
+                         TransactionDBOptions txOptionsOrNull,
+                         ColumnFamilyOptions cfOptions,
+                         List<ColumnFamilyHandle> handles,
+                         Map<String, ColumnFamilyHandle> cfByName,
+                         List<? extends AutoCloseable> owned) {
         this.db = db;
+        this.engine = Objects.requireNonNull(engine);
         this.dbOptions = dbOptions;
-        this.txOptions = txOptions;
+        this.txOptions = txOptionsOrNull;
         this.cfOptions = cfOptions;
         this.handles = handles;
         this.cfByName = cfByName;
+        this.owned = List.copyOf(owned);
     }
 
-    public TransactionDB db() {
+    /** A {@code TransactionDB}, {@code OptimisticTransactionDB} or plain {@code RocksDB}, per {@link #engine()}. */
+    public RocksDB db() {
         return db;
     }
 
+    public RocksProps.Engine engine() {
+        return engine;
+    }
+
     public Map<String, ColumnFamilyHandle> cfByName() {
         return cfByName;
     }
@@ -48,8 +79,14 @@ public final class RocksDbHandle implements AutoCloseable {
             if (h != null) h.close();
         }
         db.close();
-        txOptions.close();
+        if (txOptions != null) txOptions.close();
         dbOptions.close();
         cfOptions.close();
+        for (AutoCloseable c : owned) {
+            try {
+                c.close();
+            } catch (Exception ignore) {
+            }
+        }
     }
 }
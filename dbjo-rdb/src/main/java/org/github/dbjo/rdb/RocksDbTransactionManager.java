@@ -1,12 +1,36 @@
 package org.github.dbjo.rdb;
 
 import org.rocksdb.*;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.SavepointManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.interceptor.DefaultTransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttribute;
 import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 import org.springframework.transaction.support.DefaultTransactionStatus;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Spring transactions over any {@link RocksProps.Engine}: a {@code Transaction} on a TransactionDB
+ * (locking) or an OptimisticTransactionDB (validated at commit), a buffered {@code WriteBatchWithIndex} on a plain
+ * RocksDB. Each begins with a snapshot for repeatable reads.
+ * <p>
+ * A read-only definition takes only a snapshot and reads straight from the DB: no {@code Transaction},
+ * and writes fail.
+ * A transaction labelled {@link #UNIT_OF_WORK} (see {@link #unitOfWork()}) is a write batch on every
+ * engine: atomic, read-your-writes, but no locks or conflict checks.
+ * <p>
+ * {@code PROPAGATION_NESTED} sets a savepoint on the running transaction (or write batch): rolling the
+ * nested scope back undoes only its writes (and, on a Transaction, its locks and tracked reads), while the
+ * outer scope carries on. Nested scopes share the outer snapshot, so they read what the outer one reads,
+ * plus its writes.
+ */
 public final class RocksDbTransactionManager extends AbstractPlatformTransactionManager {
 
     /** Public resource keys (no leaking TxObject type). */
@@ -16,32 +40,172 @@ public final class RocksDbTransactionManager extends AbstractPlatformTransaction
         public static final Object READ_OPTIONS = new Object();
     }
 
-    private final TransactionDB txDb;
+    /** Transaction label, e.g. {@code @Transactional(label = UNIT_OF_WORK)}, for a {@link UnitOfWork}-style transaction. */
+    public static final String UNIT_OF_WORK = "rocks:unit-of-work";
+
+    private final RocksDB db;
+    private volatile Durability defaultDurability = Durability.WAL;
+    private volatile WriteAdmission admission;
 
-    public RocksDbTransactionManager(TransactionDB txDb) {
-        this.txDb = txDb;
+    public RocksDbTransactionManager(RocksDB db) {
+        this.db = db;
+        setNestedTransactionAllowed(true);
         // Optional: this.setRollbackOnCommitFailure(true);
     }
 
+    /**
+     * A unit-of-work definition, e.g. for a {@code TransactionTemplate}. It is also named
+     * {@link #UNIT_OF_WORK}, since a template copies the name but not the labels.
+     */
+    public static TransactionAttribute unitOfWork() {
+        DefaultTransactionAttribute def = new DefaultTransactionAttribute();
+        def.setName(UNIT_OF_WORK);
+        def.setLabels(List.of(UNIT_OF_WORK));
+        return def;
+    }
+
+    /** Durability of commits whose definition carries no {@link Durability} label (default {@code WAL}). */
+    public void setDefaultDurability(Durability durability) {
+        this.defaultDurability = Objects.requireNonNull(durability);
+    }
+
+    /**
+     * Checked when a read-write transaction begins, before it takes locks or buffers writes; a refusal
+     * surfaces as the {@link WriteStallException} itself. Null (the default) admits everything.
+     */
+    public void setWriteAdmission(WriteAdmission admission) {
+        this.admission = admission;
+    }
+
+    private static boolean isUnitOfWork(TransactionDefinition definition) {
+        if (UNIT_OF_WORK.equals(definition.getName())) return true;
+        return definition instanceof TransactionAttribute ta && ta.getLabels().contains(UNIT_OF_WORK);
+    }
+
     @Override
     protected Object doGetTransaction() {
-        // We don't need a custom transaction object for binding.
-        return new Object();
+        // Everything lives in bound resources; the object only carries the savepoint hooks.
+        return new TxObject();
+    }
+
+    /** Bound while savepoints exist: the {@link Savepoint}s still on the native stack, newest first. */
+    static final Object SAVEPOINTS = new Object();
+
+    private static final class Savepoint {
+        boolean released;
+    }
+
+    /**
+     * Savepoints for nested scopes. RocksJava's Transaction cannot pop a savepoint without rolling back to
+     * it, so a released one stays on its stack until the transaction ends, and a rollback to an older
+     * savepoint rolls back through it on the way (same result: its writes are newer).
+     */
+    private static final class TxObject implements SavepointManager {
+
+        @Override
+        public Object createSavepoint() {
+            Object res = TransactionSynchronizationManager.getResource(Keys.TXN);
+            try {
+                if (res instanceof Transaction txn) txn.setSavePoint();
+                else if (res instanceof WriteBatchSession wbs) wbs.setSavePoint();
+                else if (!(res instanceof SnapshotSession)) throw new IllegalTransactionStateException("No RocksDB transaction bound");
+            } catch (RocksDBException e) {
+                throw new TransactionSystemException("RocksDB setSavePoint failed", e);
+            }
+            Savepoint sp = new Savepoint();
+            stack(true).push(sp);
+            return sp;
+        }
+
+        @Override
+        public void rollbackToSavepoint(Object savepoint) {
+            Deque<Savepoint> stack = stack(false);
+            if (stack == null || !stack.contains(savepoint)) throw new IllegalTransactionStateException("Unknown savepoint");
+            Object res = TransactionSynchronizationManager.getResource(Keys.TXN);
+            try {
+                Savepoint top;
+                do {
+                    top = stack.pop();
+                    if (res instanceof Transaction txn) txn.rollbackToSavePoint();
+                    else if (res instanceof WriteBatchSession wbs) wbs.rollbackToSavePoint();
+                } while (top != savepoint);
+            } catch (RocksDBException e) {
+                throw new TransactionSystemException("RocksDB rollbackToSavePoint failed", e);
+            }
+            // Spring releases the savepoint next; it is already gone
+            ((Savepoint) savepoint).released = true;
+            unbindIfEmpty(stack);
+        }
+
+        @Override
+        public void releaseSavepoint(Object savepoint) {
+            Deque<Savepoint> stack = stack(false);
+            Savepoint sp = (Savepoint) savepoint;
+            if (sp.released || stack == null) return;
+            sp.released = true;
+            Object res = TransactionSynchronizationManager.getResource(Keys.TXN);
+            // a write batch can drop its newest savepoint outright; otherwise it stays on the native stack
+            if (res instanceof WriteBatchSession wbs && stack.peek() == sp) {
+                try {
+                    wbs.popSavePoint();
+                } catch (RocksDBException e) {
+                    throw new TransactionSystemException("RocksDB popSavePoint failed", e);
+                }
+                stack.pop();
+            } else if (res instanceof SnapshotSession) {
+                stack.remove(sp);
+            }
+            unbindIfEmpty(stack);
+        }
+
+        /**
+         * Nested scopes do not get {@link #doCleanupAfterCompletion}, and the outer scope may not be ours
+         * (e.g. a {@link ReadView}), so the stack goes as soon as no savepoint is left on it.
+         */
+        private static void unbindIfEmpty(Deque<Savepoint> stack) {
+            if (stack.isEmpty()) TransactionSynchronizationManager.unbindResourceIfPossible(SAVEPOINTS);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Deque<Savepoint> stack(boolean create) {
+            Object s = TransactionSynchronizationManager.getResource(SAVEPOINTS);
+            if (s == null && create) {
+                s = new ArrayDeque<Savepoint>();
+                TransactionSynchronizationManager.bindResource(SAVEPOINTS, s);
+            }
+            return (Deque<Savepoint>) s;
+        }
     }
 
     @Override
     protected boolean isExistingTransaction(Object transaction) {
-        return TransactionSynchronizationManager.getResource(Keys.TXN) instanceof Transaction;
+        return TransactionSynchronizationManager.hasResource(Keys.TXN);
     }
 
     @Override
     protected void doBegin(Object transaction, TransactionDefinition definition) {
+        WriteAdmission wa = this.admission;
+        if (wa != null && !definition.isReadOnly()) wa.admit(); // outside the try: not wrapped
         try {
+            if (definition.isReadOnly()) {
+                SnapshotSession ss = new SnapshotSession(db);
+                TransactionSynchronizationManager.bindResource(Keys.TXN, ss);
+                TransactionSynchronizationManager.bindResource(Keys.READ_OPTIONS, ss.newReadOptions());
+                return;
+            }
+            Durability labelled = Durability.ofLabels(definition);
+            Durability durability = Durability.scopedOr(labelled != null ? labelled : defaultDurability);
+            if (Engines.of(db) == RocksProps.Engine.PLAIN || isUnitOfWork(definition)) {
+                WriteBatchSession wbs = new WriteBatchSession(db, durability);
+                TransactionSynchronizationManager.bindResource(Keys.TXN, wbs);
+                TransactionSynchronizationManager.bindResource(Keys.READ_OPTIONS, wbs.newReadOptions());
+                return;
+            }
+
             // WriteOptions is a native resource; close after beginTransaction returns.
             Transaction txn;
-            try (WriteOptions wo = new WriteOptions()) {
-                // You can tune wo here (disableWAL, sync, etc.)
-                txn = txDb.beginTransaction(wo);
+            try (WriteOptions wo = durability.newWriteOptions()) {
+                txn = Engines.beginTransaction(db, wo); // the commit writes with these options
             }
 
             // Enable snapshot for repeatable reads inside this transaction.
@@ -66,12 +230,14 @@ public final class RocksDbTransactionManager extends AbstractPlatformTransaction
     @Override
     protected void doCommit(DefaultTransactionStatus status) {
         Object res = TransactionSynchronizationManager.getResource(Keys.TXN);
-        if (res instanceof Transaction txn) {
-            try {
+        try {
+            if (res instanceof Transaction txn) {
                 txn.commit();
-            } catch (RocksDBException e) {
-                throw new TransactionSystemException("RocksDB commit failed", e);
+            } else if (res instanceof WriteBatchSession wbs) {
+                wbs.commit();
             }
+        } catch (RocksDBException e) {
+            throw new TransactionSystemException("RocksDB commit failed", e);
         }
     }
 
@@ -84,6 +250,8 @@ public final class RocksDbTransactionManager extends AbstractPlatformTransaction
             } catch (RocksDBException e) {
                 throw new TransactionSystemException("RocksDB rollback failed", e);
             }
+        } else if (res instanceof WriteBatchSession wbs) {
+            wbs.rollback();
         }
     }
 
@@ -92,6 +260,7 @@ public final class RocksDbTransactionManager extends AbstractPlatformTransaction
         // Unbind in reverse order of typical usage
         Object roObj  = TransactionSynchronizationManager.unbindResourceIfPossible(Keys.READ_OPTIONS);
         Object txnObj = TransactionSynchronizationManager.unbindResourceIfPossible(Keys.TXN);
+        TransactionSynchronizationManager.unbindResourceIfPossible(SAVEPOINTS);
 
         if (roObj instanceof ReadOptions ro) {
             ro.close();
@@ -105,6 +274,10 @@ public final class RocksDbTransactionManager extends AbstractPlatformTransaction
                 // clearSnapshot may throw if txn already closed; ignore
             }
             txn.close();
+        } else if (txnObj instanceof WriteBatchSession wbs) {
+            wbs.close();
+        } else if (txnObj instanceof SnapshotSession ss) {
+            ss.close();
         }
     }
 }
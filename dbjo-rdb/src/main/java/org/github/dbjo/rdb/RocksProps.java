@@ -1,17 +1,39 @@
 package org.github.dbjo.rdb;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.ConstructorBinding;
 
 @ConfigurationProperties(prefix = "rocks")
-public record RocksProps(String path) {
+public record RocksProps(String path, Engine engine) {
+
+    /**
+     * How the DB is opened ({@code rocks.engine}), and so what a Spring transaction is:
+     * <ul>
+     *   <li>{@code PESSIMISTIC} (default): {@code TransactionDB}; getForUpdate locks, every write goes
+     *       through the lock manager;</li>
+     *   <li>{@code OPTIMISTIC}: {@code OptimisticTransactionDB}; no locks, keys read for update are
+     *       validated at commit, which fails with {@code Busy} on a conflict;</li>
+     *   <li>{@code PLAIN}: {@code RocksDB}; a transaction buffers its writes in a
+     *       {@code WriteBatchWithIndex} (reads see them) and commits with one atomic write. Nothing is
+     *       locked or validated, so concurrent read-modify-write transactions can lose updates.</li>
+     * </ul>
+     */
+    public enum Engine { PESSIMISTIC, OPTIMISTIC, PLAIN }
+
+    @ConstructorBinding
     public RocksProps {
         if (path == null || path.isBlank()) {
             // default for demo
             path = "/tmp/rocksdb";
         }
+        if (engine == null) engine = Engine.PESSIMISTIC;
+    }
+
+    public RocksProps(String path) {
+        this(path, null);
     }
 
     public boolean wipeOnStart() {
         return true;
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,37 @@
 package org.github.dbjo.rdb;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface RocksSchema {
     Collection<String> columnFamilies();
 
+    /** Merge operators by CF name, for CFs written with {@link RocksWriteBatch#merge}; set when the DB is opened. */
+    default Map<String, Merge> mergeOperators() { return Map.of(); }
+
     static RocksSchema of(String... cfs) {
         return () -> List.of(cfs);
     }
+
+    /** {@code cfs}, opened with {@code op} as their merge operator. */
+    static RocksSchema merging(Merge op, String... cfs) {
+        Map<String, Merge> ops = new HashMap<>();
+        for (String cf : cfs) ops.put(cf, op);
+        Map<String, Merge> frozen = Map.copyOf(ops);
+        List<String> names = List.of(cfs);
+        return new RocksSchema() {
+            @Override public Collection<String> columnFamilies() { return names; }
+            @Override public Map<String, Merge> mergeOperators() { return frozen; }
+        };
+    }
+
+    /** The built-in merge operators a CF can be opened with. */
+    enum Merge {
+        /** Operands and values are 8-byte little-endian integers, summed ({@code uint64add}); see {@link RocksCounters}. */
+        UINT64_ADD,
+        /** Operands are appended to the value with no separator; for protobuf values, see {@link AbstractRocksDao#patch}. */
+        CONCAT
+    }
 }
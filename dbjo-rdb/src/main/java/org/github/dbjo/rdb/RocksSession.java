@@ -2,6 +2,9 @@ package org.github.dbjo.rdb;
 
 import org.rocksdb.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface RocksSession {
     ReadOptions newReadOptions();
 
@@ -11,6 +14,24 @@ public interface RocksSession {
 
     void write(RocksWriteBatch batch) throws RocksDBException;
 
+    /** True when reads and writes go through a transaction bound to the calling thread. */
+    default boolean isTransactional() { return false; }
+
+    /**
+     * Reads {@code key} and, in a transaction, locks it until commit so a check made on the result
+     * still holds when the transaction's writes land. Auto-commit sessions just read.
+     */
+    default byte[] getForUpdate(ColumnFamilyHandle cf, ReadOptions ro, byte[] key) throws RocksDBException {
+        return get(cf, ro, key);
+    }
+
+    /** Point-gets many keys of one CF in a single call; result i is null when key i is absent. */
+    default List<byte[]> multiGet(ColumnFamilyHandle cf, ReadOptions ro, List<byte[]> keys) throws RocksDBException {
+        List<byte[]> out = new ArrayList<>(keys.size());
+        for (byte[] k : keys) out.add(get(cf, ro, k));
+        return out;
+    }
+
     // Convenience for simple point-get
     default byte[] get(ColumnFamilyHandle cf, byte[] key) throws RocksDBException {
         try (ReadOptions ro = newReadOptions()) {
@@ -25,10 +46,39 @@ public interface RocksSession {
         return new IteratorHandle(it, ro);
     }
 
-    record IteratorHandle(RocksIterator it, ReadOptions ro) implements AutoCloseable {
+    /**
+     * As {@link #openIterator(ColumnFamilyHandle)}, with {@code iterate_lower_bound} (inclusive) and
+     * {@code iterate_upper_bound} (exclusive) set where non-null, so RocksDB itself stops at the range
+     * ends instead of reading on (and through tombstones) until the caller notices.
+     */
+    default IteratorHandle openIterator(ColumnFamilyHandle cf, byte[] lowerInclusive, byte[] upperExclusive) {
+        if (lowerInclusive == null && upperExclusive == null) return openIterator(cf);
+        ReadOptions ro = newReadOptions();
+        List<AbstractSlice<?>> bounds = new ArrayList<>(2);
+        if (lowerInclusive != null) {
+            Slice lo = new Slice(lowerInclusive);
+            bounds.add(lo);
+            ro.setIterateLowerBound(lo);
+        }
+        if (upperExclusive != null) {
+            Slice up = new Slice(upperExclusive);
+            bounds.add(up);
+            ro.setIterateUpperBound(up);
+        }
+        RocksIterator it = iterator(cf, ro);
+        return new IteratorHandle(it, ro, bounds);
+    }
+
+    /** The bound slices must outlive the iterator, so the handle owns them too. */
+    record IteratorHandle(RocksIterator it, ReadOptions ro, List<AbstractSlice<?>> bounds) implements AutoCloseable {
+        public IteratorHandle(RocksIterator it, ReadOptions ro) {
+            this(it, ro, List.of());
+        }
+
         @Override public void close() {
             it.close();
             ro.close();
+            for (AbstractSlice<?> b : bounds) b.close();
         }
     }
 }
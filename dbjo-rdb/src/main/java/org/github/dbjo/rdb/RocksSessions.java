@@ -1,6 +1,23 @@
 package org.github.dbjo.rdb;
 
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+
 public interface RocksSessions {
     RocksSession current();
-}
 
+    interface Work<R> {
+        R run() throws RocksDBException;
+    }
+
+    /**
+     * Runs {@code work}, a read-modify-write of {@code key} in {@code cf} that reads it through
+     * {@link RocksSession#getForUpdate}, so that no other writer of the key slips in between its read
+     * and its write. {@code work} must get its session from {@link #current()} and may be run more than
+     * once. {@code durability} applies when the implementation commits on its own (null: WAL).
+     * This default just runs it: no isolation.
+     */
+    default <R> R atomically(ColumnFamilyHandle cf, byte[] key, Durability durability, Work<R> work) throws RocksDBException {
+        return work.run();
+    }
+}
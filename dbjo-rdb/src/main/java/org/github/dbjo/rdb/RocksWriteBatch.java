@@ -5,15 +5,44 @@ import org.rocksdb.ColumnFamilyHandle;
 import java.util.*;
 
 public final class RocksWriteBatch {
-    public sealed interface Op permits Put, Delete {}
+    public sealed interface Op permits Put, Delete, Merge {}
     public record Put(ColumnFamilyHandle cf, byte[] key, byte[] value) implements Op {}
     public record Delete(ColumnFamilyHandle cf, byte[] key) implements Op {}
+    /** An operand for the CF's merge operator (see {@link RocksSchema.Merge}). */
+    public record Merge(ColumnFamilyHandle cf, byte[] key, byte[] operand) implements Op {}
+
+    private record Slot(ColumnFamilyHandle cf, ByteArrayKey key) {}
 
     private final List<Op> ops = new ArrayList<>();
+    private Map<Slot, Op> latest; // built on the first pending() call, then kept up to date
+    private Durability durability; // null: the session's default
 
-    public void put(ColumnFamilyHandle cf, byte[] key, byte[] value) { ops.add(new Put(cf, key, value)); }
-    public void delete(ColumnFamilyHandle cf, byte[] key) { ops.add(new Delete(cf, key)); }
+    public void put(ColumnFamilyHandle cf, byte[] key, byte[] value) { add(new Put(cf, key, value), cf, key); }
+    public void delete(ColumnFamilyHandle cf, byte[] key) { add(new Delete(cf, key), cf, key); }
+    public void merge(ColumnFamilyHandle cf, byte[] key, byte[] operand) { add(new Merge(cf, key, operand), cf, key); }
 
     public List<Op> ops() { return List.copyOf(ops); }
     public boolean isEmpty() { return ops.isEmpty(); }
+
+    /** Durability of an auto-commit write of this batch; ignored inside a transaction, which commits as a whole. */
+    public Durability durability() { return durability; }
+    public RocksWriteBatch durability(Durability d) { this.durability = d; return this; }
+
+    /** The last op queued for {@code key} in {@code cf}, or null when the batch does not touch it. */
+    Op pending(ColumnFamilyHandle cf, byte[] key) {
+        if (latest == null) {
+            latest = new HashMap<>();
+            for (Op op : ops) {
+                if (op instanceof Put p) latest.put(new Slot(p.cf(), new ByteArrayKey(p.key())), p);
+                else if (op instanceof Delete d) latest.put(new Slot(d.cf(), new ByteArrayKey(d.key())), d);
+                else if (op instanceof Merge m) latest.put(new Slot(m.cf(), new ByteArrayKey(m.key())), m);
+            }
+        }
+        return latest.get(new Slot(cf, new ByteArrayKey(key)));
+    }
+
+    private void add(Op op, ColumnFamilyHandle cf, byte[] key) {
+        ops.add(op);
+        if (latest != null) latest.put(new Slot(cf, new ByteArrayKey(key)), op);
+    }
 }
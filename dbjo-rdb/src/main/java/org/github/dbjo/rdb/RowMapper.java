@@ -0,0 +1,13 @@
+package org.github.dbjo.rdb;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a {@link ResultSet} to an entity. Generated mappers read columns by ordinal
+ * with typed getters, so no reflection or column-name lookup happens per row.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,208 @@
+package org.github.dbjo.rdb;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} over a DAO scan. Each {@code onNext} carries up to {@code batchSize} entries
+ * and one {@code request(n)} asks for n batches.
+ * <p>
+ * When demand runs out the iterator is kept open for {@code idleRelease}, then closed. The next request
+ * re-seeks just past the last emitted key, so a paused subscriber pins neither an iterator nor a thread.
+ * A resumed scan reads the latest data: the scan is consistent within a burst, not across pauses.
+ * Delivery for a subscription happens on one executor task at a time (virtual threads by default).
+ */
+final class ScanPublisher<K, T> implements Flow.Publisher<List<Map.Entry<K, T>>> {
+
+    /** Opens a scan for a query, optionally resuming after a raw iterator key. */
+    @FunctionalInterface
+    interface ScanOpener<K, T> {
+        DaoSpliterator<K, T> open(Query<K> q, byte[] resumeAfterOrNull);
+    }
+
+    private static final ScheduledExecutorService IDLE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dbjo-scan-idle");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScanOpener<K, T> opener;
+    private final Query<K> query;
+    private final int batchSize;
+    private final long idleReleaseNanos;
+    private final Executor executor;
+
+    ScanPublisher(ScanOpener<K, T> opener, Query<K> query, int batchSize, Duration idleRelease, Executor executor) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        this.opener = Objects.requireNonNull(opener);
+        this.query = Objects.requireNonNull(query);
+        this.batchSize = batchSize;
+        this.idleReleaseNanos = Objects.requireNonNull(idleRelease).toNanos();
+        this.executor = (executor != null) ? executor : r -> Thread.ofVirtual().name("dbjo-scan").start(r);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Map.Entry<K, T>>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        ScanSubscription s = new ScanSubscription(subscriber);
+        subscriber.onSubscribe(s);
+    }
+
+    private final class ScanSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<Map.Entry<K, T>>> downstream;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable pendingError;
+
+        // guarded by "this": the scan may be released by the idle timer while no drain runs
+        private DaoSpliterator<K, T> scan;
+        private byte[] resumeAfter;
+        private int remaining = query.limit();
+        private long lastActivityNanos;
+        private ScheduledFuture<?> idleTask;
+
+        ScanSubscription(Flow.Subscriber<? super List<Map.Entry<K, T>>> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void request(long n) {
+            if (done) return;
+            if (n <= 0) {
+                // signalled from the drain loop so it never overlaps an onNext
+                pendingError = new IllegalArgumentException("request(n) requires n > 0 (rule 3.9), got " + n);
+                schedule();
+                return;
+            }
+            demand.getAndUpdate(d -> (d + n < 0) ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            schedule(); // drain loop releases the scan
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    done = true;
+                    release();
+                    downstream.onError(e);
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                Throwable err = pendingError;
+                if (done) {
+                    release();
+                } else if (err != null) {
+                    fail(err);
+                } else {
+                    emitWhileDemand();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitWhileDemand() {
+            while (!done && demand.get() > 0) {
+                List<Map.Entry<K, T>> batch;
+                boolean exhausted;
+                try {
+                    synchronized (this) {
+                        batch = nextBatch();
+                        exhausted = (scan == null);
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                    return;
+                }
+
+                if (!batch.isEmpty()) {
+                    demand.decrementAndGet();
+                    downstream.onNext(batch);
+                }
+                if (exhausted) {
+                    if (!done) {
+                        done = true;
+                        downstream.onComplete();
+                    }
+                    return;
+                }
+            }
+            if (!done) armIdleRelease();
+        }
+
+        /** Reads up to batchSize entries; leaves {@code scan == null} once the scan is exhausted. */
+        private List<Map.Entry<K, T>> nextBatch() {
+            if (idleTask != null) {
+                idleTask.cancel(false);
+                idleTask = null;
+            }
+            List<Map.Entry<K, T>> batch = new ArrayList<>(Math.min(batchSize, remaining));
+            if (remaining <= 0) return batch;
+
+            if (scan == null) {
+                Query<K> q = new Query<>(query.keyRange(), query.indexPredicates(), remaining, query.descending());
+                scan = opener.open(q, resumeAfter);
+            }
+            while (batch.size() < batchSize && scan.tryAdvance(batch::add)) { /* fill */ }
+            remaining -= batch.size();
+            if (scan.lastKey() != null) resumeAfter = scan.lastKey();
+
+            if (batch.size() < batchSize || remaining <= 0) {
+                scan.close();
+                scan = null;
+                remaining = 0;
+            }
+            lastActivityNanos = System.nanoTime();
+            return batch;
+        }
+
+        private synchronized void armIdleRelease() {
+            if (scan == null || idleTask != null) return;
+            if (idleReleaseNanos <= 0) {
+                closeScan();
+                return;
+            }
+            idleTask = IDLE_TIMER.schedule(this::releaseIfIdle, idleReleaseNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized void releaseIfIdle() {
+            idleTask = null;
+            if (scan != null && System.nanoTime() - lastActivityNanos >= idleReleaseNanos) closeScan();
+        }
+
+        /** Closes the iterator but keeps the resume point; the next request re-seeks. */
+        private void closeScan() {
+            scan.close();
+            scan = null;
+        }
+
+        private synchronized void release() {
+            if (idleTask != null) {
+                idleTask.cancel(false);
+                idleTask = null;
+            }
+            if (scan != null) closeScan();
+        }
+
+        private void fail(Throwable t) {
+            if (done) return;
+            done = true;
+            release();
+            downstream.onError(t);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.PerfContext;
+import org.rocksdb.PerfLevel;
+import org.rocksdb.RocksDB;
+
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow-query logger for {@link AbstractRocksDao#stream(Query)}.
+ * <p>
+ * Every scan gets a {@link Probe}; when the scan is closed and it took longer than the time threshold
+ * or examined more entries than the scan threshold, an {@link Entry} is handed to the {@link Sink}.
+ * RocksDB counters (tombstones skipped, block cache hits/misses, bytes read) come from the
+ * thread-local PerfContext, so they are only meaningful when the stream is consumed on the thread
+ * that opened it (which is what sequential streams do).
+ */
+public final class SlowQueryLog {
+
+    /** Receives entries that crossed a threshold. */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Entry e);
+    }
+
+    /** What a slow scan did. Perf counters are deltas over the lifetime of the scan. */
+    public record Entry(
+            String entity,
+            String accessPath,
+            String query,
+            long elapsedNanos,
+            long seeks,
+            long iteratorSteps,
+            long entriesScanned,
+            long rowsReturned,
+            long indexEntriesSkipped,
+            long primaryLookups,
+            long staleIndexEntries,
+            long internalKeysSkipped,
+            long tombstonesSkipped,
+            long blockCacheHits,
+            long blockCacheMisses,
+            long bytesRead
+    ) {
+        public long elapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+
+        @Override
+        public String toString() {
+            return "slow query on " + entity + " [" + accessPath + "] " + query
+                    + " took " + elapsedMillis() + "ms"
+                    + ": seeks=" + seeks
+                    + " steps=" + iteratorSteps
+                    + " scanned=" + entriesScanned
+                    + " returned=" + rowsReturned
+                    + " idxSkipped=" + indexEntriesSkipped
+                    + " lookups=" + primaryLookups
+                    + " stale=" + staleIndexEntries
+                    + " internalKeysSkipped=" + internalKeysSkipped
+                    + " tombstonesSkipped=" + tombstonesSkipped
+                    + " cacheHits=" + blockCacheHits
+                    + " cacheMisses=" + blockCacheMisses
+                    + " bytesRead=" + bytesRead;
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(SlowQueryLog.class.getName());
+
+    private final RocksDB db;
+    private final long thresholdNanos;
+    private final long scannedThreshold;
+    private final PerfLevel perfLevel;
+    private final Sink sink;
+
+    private SlowQueryLog(Builder b) {
+        this.db = Objects.requireNonNull(b.db, "db");
+        this.thresholdNanos = b.thresholdNanos;
+        this.scannedThreshold = b.scannedThreshold;
+        this.perfLevel = Objects.requireNonNull(b.perfLevel, "perfLevel");
+        this.sink = Objects.requireNonNull(b.sink, "sink");
+    }
+
+    public static Builder builder(RocksDB db) { return new Builder(db); }
+
+    public static final class Builder {
+        private final RocksDB db;
+        private long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long scannedThreshold = Long.MAX_VALUE;
+        private PerfLevel perfLevel = PerfLevel.ENABLE_COUNT;
+        private Sink sink = e -> LOG.log(System.Logger.Level.WARNING, e.toString());
+
+        private Builder(RocksDB db) { this.db = db; }
+
+        /** Log scans slower than this; 0 logs everything. */
+        public Builder threshold(long amount, TimeUnit unit) { this.thresholdNanos = unit.toNanos(amount); return this; }
+        /** Also log scans that examined at least this many iterator entries. */
+        public Builder scannedThreshold(long n) { this.scannedThreshold = n; return this; }
+        /** PerfLevel raised for the duration of a scan; DISABLE skips RocksDB counters entirely. */
+        public Builder perfLevel(PerfLevel level) { this.perfLevel = level; return this; }
+        public Builder sink(Sink s) { this.sink = s; return this; }
+        public SlowQueryLog build() { return new SlowQueryLog(this); }
+    }
+
+    Probe start(String entity, Query<?> q) {
+        return new Probe(entity, q);
+    }
+
+    /**
+     * Open probes on a thread, which may interleave (e.g. two streams consumed in turn). The level found
+     * before the outermost one is restored only when the last of them finishes.
+     */
+    private static final class PerfScope {
+        final Thread owner = Thread.currentThread();
+        PerfLevel levelBefore;
+        int depth;
+    }
+
+    private static final ThreadLocal<PerfScope> PERF_SCOPE = ThreadLocal.withInitial(PerfScope::new);
+
+    /** Per-scan counters; filled in by {@link DaoSpliterator}. Single-threaded by design. */
+    final class Probe {
+        private final String entity;
+        private final Query<?> query;
+        private final long startNanos;
+        private final PerfScope perfScope;
+        private final long[] perfAtStart;
+
+        long seeks;
+        long iteratorSteps;
+        long entriesScanned;
+        long rowsReturned;
+        long indexEntriesSkipped;
+        long primaryLookups;
+        long staleIndexEntries;
+
+        private Probe(String entity, Query<?> query) {
+            this.entity = entity;
+            this.query = query;
+            if (perfLevel != PerfLevel.DISABLE) {
+                this.perfScope = PERF_SCOPE.get();
+                PerfLevel current = db.getPerfLevel();
+                if (perfScope.depth++ == 0) perfScope.levelBefore = current;
+                if (current.getValue() < perfLevel.getValue()) db.setPerfLevel(perfLevel);
+                this.perfAtStart = readPerf();
+            } else {
+                this.perfScope = null;
+                this.perfAtStart = null;
+            }
+            this.startNanos = System.nanoTime();
+        }
+
+        void finish() {
+            long elapsed = System.nanoTime() - startNanos;
+
+            long[] perf = new long[PERF_COUNTERS];
+            if (perfAtStart != null) {
+                long[] now = readPerf();
+                for (int i = 0; i < PERF_COUNTERS; i++) perf[i] = now[i] - perfAtStart[i];
+                restorePerfLevel();
+            }
+
+            if (elapsed < thresholdNanos && entriesScanned < scannedThreshold) return;
+
+            sink.accept(new Entry(
+                    entity,
+                    accessPath(query),
+                    describe(query),
+                    elapsed,
+                    seeks,
+                    iteratorSteps,
+                    entriesScanned,
+                    rowsReturned,
+                    indexEntriesSkipped,
+                    primaryLookups,
+                    staleIndexEntries,
+                    perf[0], perf[1], perf[2], perf[3], perf[4]
+            ));
+        }
+
+        /** Only the outermost probe on the opening thread puts the level back. */
+        private void restorePerfLevel() {
+            if (--perfScope.depth > 0 || perfScope.owner != Thread.currentThread()) return;
+            if (perfScope.levelBefore != db.getPerfLevel()) db.setPerfLevel(perfScope.levelBefore);
+            PERF_SCOPE.remove();
+        }
+
+        private long[] readPerf() {
+            try (PerfContext pc = db.getPerfContext()) {
+                return new long[]{
+                        pc.getInternalKeySkippedCount(),
+                        pc.getInternalDeleteSkippedCount(),
+                        pc.getBlockCacheHitCount(),
+                        pc.getBlockReadCount(),
+                        pc.getBlockReadByte()
+                };
+            }
+        }
+    }
+
+    private static final int PERF_COUNTERS = 5;
+
+    static String accessPath(Query<?> q) {
+        if (q.indexPredicates().isEmpty()) {
+            return q.keyRange().isPresent() ? "primary-range" : "primary-scan";
+        }
+        IndexPredicate p = q.indexPredicates().get(0);
+        if (p instanceof IndexPredicate.Eq eq) return "index-eq:" + eq.indexName();
+        if (p instanceof IndexPredicate.Range r) return "index-range:" + r.indexName();
+        if (p instanceof IndexPredicate.In in) return "index-in:" + in.indexName();
+        return "index:" + p.getClass().getSimpleName();
+    }
+
+    static String describe(Query<?> q) {
+        StringBuilder sb = new StringBuilder("{");
+        q.keyRange().ifPresent(kr -> sb
+                .append("key").append(kr.fromInclusive() ? "[" : "(")
+                .append(kr.from()).append(", ").append(kr.to())
+                .append(kr.toInclusive() ? "]" : ")").append(' '));
+        for (IndexPredicate p : q.indexPredicates()) {
+            if (p instanceof IndexPredicate.Eq eq) {
+                sb.append(eq.indexName()).append("=").append(hex(eq.valueBytes())).append(' ');
+            } else if (p instanceof IndexPredicate.Range r) {
+                sb.append(r.indexName()).append(r.fromInclusive() ? "[" : "(")
+                        .append(hex(r.from())).append(", ").append(hex(r.to()))
+                        .append(r.toInclusive() ? "]" : ")").append(' ');
+            } else if (p instanceof IndexPredicate.In in) {
+                sb.append(in.indexName()).append(" in ").append(in.values().size()).append(" values ");
+            }
+        }
+        if (q.limit() != Integer.MAX_VALUE) sb.append("limit=").append(q.limit()).append(' ');
+        sb.append(q.descending() ? "desc" : "asc").append('}');
+        return sb.toString();
+    }
+
+    private static String hex(byte[] b) {
+        return b == null ? "null" : "0x" + HexFormat.of().formatHex(b);
+    }
+}
@@ -0,0 +1,63 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only transaction (or a {@link ReadView}'s session): reads straight from the DB at one snapshot.
+ * No {@code Transaction} is created, so begin and end cost one snapshot acquire and release. Writes fail.
+ * Holds no mutable state, so any number of threads may read through it.
+ */
+final class SnapshotSession implements RocksSession, AutoCloseable {
+    private final RocksDB db;
+    private final Snapshot snapshot;
+    private final Runnable onClose;
+
+    /** Takes a snapshot of its own, released on close. */
+    SnapshotSession(RocksDB db) {
+        this.db = db;
+        this.snapshot = db.getSnapshot();
+        this.onClose = () -> db.releaseSnapshot(snapshot);
+    }
+
+    /** Reads at {@code snapshot}, which the caller owns; close runs {@code onClose}. */
+    SnapshotSession(RocksDB db, Snapshot snapshot, Runnable onClose) {
+        this.db = db;
+        this.snapshot = snapshot;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public ReadOptions newReadOptions() {
+        return new ReadOptions().setSnapshot(snapshot);
+    }
+
+    @Override
+    public byte[] get(ColumnFamilyHandle cf, ReadOptions ro, byte[] key) throws RocksDBException {
+        return db.get(cf, ro, key);
+    }
+
+    @Override
+    public RocksIterator iterator(ColumnFamilyHandle cf, ReadOptions ro) {
+        return db.newIterator(cf, ro);
+    }
+
+    @Override
+    public List<byte[]> multiGet(ColumnFamilyHandle cf, ReadOptions ro, List<byte[]> keys) throws RocksDBException {
+        return db.multiGetAsList(ro, Collections.nCopies(keys.size(), cf), keys);
+    }
+
+    @Override
+    public void write(RocksWriteBatch batch) {
+        if (!batch.isEmpty()) throw new IllegalStateException("Write in a read-only transaction or read view");
+    }
+
+    @Override public boolean isTransactional() { return true; }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+}
@@ -3,26 +3,143 @@ package org.github.dbjo.rdb;
 import org.rocksdb.*;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-public final class SpringRocksSessions implements RocksSessions {
-    private final TransactionDB db;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
-    public SpringRocksSessions(TransactionDB db) {
+public final class SpringRocksSessions implements RocksSessions {
+    private final RocksDB db;
+    private volatile GroupCommitter groupCommitter;
+    private volatile WriteAdmission admission;
+    private volatile int maxAttempts = TxnRetry.MAX_ATTEMPTS;
+    private final RetryMetrics retryMetrics = new RetryMetrics();
+    private final ReentrantLock[] keyLocks; // PLAIN engine only
+
+    /** Works with every {@link RocksProps.Engine}; transactions are whatever {@link RocksDbTransactionManager} bound. */
+    public SpringRocksSessions(RocksDB db) {
         this.db = db;
+        this.keyLocks = new ReentrantLock[KEY_LOCK_STRIPES];
+        for (int i = 0; i < keyLocks.length; i++) keyLocks[i] = new ReentrantLock();
     }
 
+    private static final int KEY_LOCK_STRIPES = 256;
+
     @Override
     public RocksSession current() {
         Object txnObj = TransactionSynchronizationManager.getResource(RocksDbTransactionManager.Keys.TXN);
         if (txnObj instanceof Transaction txn) {
             return new TxBoundSession(db, txn);
         }
-        return new AutoCommitSession(db);
+        if (txnObj instanceof RocksSession bound) {
+            return bound; // a unit of work or a read-only snapshot
+        }
+        return new AutoCommitSession(db, groupCommitter, admission);
+    }
+
+    /**
+     * Inside a bound transaction or unit of work, runs {@code work} in it: the read locks (or is validated
+     * at the caller's commit), and a conflict fails the caller's transaction, which is the caller's to
+     * retry. A unit of work or PLAIN transaction has nothing to lock with, so there it is not isolated.
+     * <p>
+     * Otherwise {@code work} gets a transaction of its own, committed at the end and retried with
+     * jittered backoff on Busy / TimedOut / TryAgain (see {@link #retryMetrics()}). On the PLAIN engine it
+     * runs instead in a write batch under an in-process lock striped by key, which excludes other
+     * {@code atomically} calls in this process but not plain writes. Either way it passes
+     * {@link #setWriteAdmission admission} once, up front, not per write.
+     */
+    @Override
+    public <R> R atomically(ColumnFamilyHandle cf, byte[] key, Durability durability, Work<R> work) throws RocksDBException {
+        if (TransactionSynchronizationManager.hasResource(RocksDbTransactionManager.Keys.TXN)) return work.run();
+        WriteAdmission wa = this.admission;
+        if (wa != null) wa.admit();
+        if (Engines.of(db) == RocksProps.Engine.PLAIN) {
+            ReentrantLock lock = keyLocks[Math.floorMod(Arrays.hashCode(key), keyLocks.length)];
+            lock.lock();
+            WriteBatchSession wbs = null;
+            try {
+                // a write batch, so the block's writes land together and are not admitted one by one;
+                // opened under the lock, so its snapshot has the previous holder's writes
+                wbs = new WriteBatchSession(db, durability == null ? Durability.WAL : durability);
+                TransactionSynchronizationManager.bindResource(RocksDbTransactionManager.Keys.TXN, wbs);
+                try {
+                    R r = work.run();
+                    wbs.commit();
+                    return r;
+                } finally {
+                    TransactionSynchronizationManager.unbindResource(RocksDbTransactionManager.Keys.TXN);
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RocksDbTransactionManager.SAVEPOINTS);
+                }
+            } finally {
+                if (wbs != null) wbs.close();
+                lock.unlock();
+            }
+        }
+        return TxnRetry.run(maxAttempts, retryMetrics, () -> {
+            Transaction txn;
+            try (WriteOptions wo = (durability == null ? Durability.WAL : durability).newWriteOptions()) {
+                txn = Engines.beginTransaction(db, wo);
+            }
+            boolean committed = false;
+            TransactionSynchronizationManager.bindResource(RocksDbTransactionManager.Keys.TXN, txn);
+            try {
+                R r = work.run();
+                txn.commit();
+                committed = true;
+                return r;
+            } finally {
+                TransactionSynchronizationManager.unbindResource(RocksDbTransactionManager.Keys.TXN);
+                TransactionSynchronizationManager.unbindResourceIfPossible(RocksDbTransactionManager.SAVEPOINTS);
+                try {
+                    if (!committed) txn.rollback();
+                } finally {
+                    txn.close();
+                }
+            }
+        });
+    }
+
+    /** Gates auto-commit writes and {@link #atomically} calls; null (the default) admits everything. */
+    public void setWriteAdmission(WriteAdmission admission) {
+        this.admission = admission;
+    }
+
+    /** Attempts per {@link #atomically} call before a conflict is thrown (default 8). */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be > 0");
+        this.maxAttempts = maxAttempts;
+    }
+
+    public RetryMetrics retryMetrics() {
+        return retryMetrics;
+    }
+
+    /**
+     * Merges concurrent auto-commit writes into shared {@code WriteBatch}es (see {@link GroupCommitter}).
+     * Pays off for many small {@link Durability#SYNC} writes, where each fsync is shared by the group.
+     * A leader waits up to {@code maxDelay} (may be zero) for other writers before writing.
+     */
+    public GroupCommitter enableGroupCommit(Duration maxDelay, int maxGroup) {
+        GroupCommitter gc = new GroupCommitter(db, maxDelay, maxGroup);
+        this.groupCommitter = gc;
+        return gc;
+    }
+
+    public void disableGroupCommit() {
+        this.groupCommitter = null;
     }
 
     private static final class AutoCommitSession implements RocksSession {
-        private final TransactionDB db;
+        private final RocksDB db;
+        private final GroupCommitter groupCommitter; // null: write alone
+        private final WriteAdmission admission; // null: no gate
 
-        AutoCommitSession(TransactionDB db) { this.db = db; }
+        AutoCommitSession(RocksDB db, GroupCommitter groupCommitter, WriteAdmission admission) {
+            this.db = db;
+            this.groupCommitter = groupCommitter;
+            this.admission = admission;
+        }
 
         @Override public ReadOptions newReadOptions() { return new ReadOptions(); }
 
@@ -36,13 +153,25 @@ public final class SpringRocksSessions implements RocksSessions {
             return db.newIterator(cf, ro);
         }
 
+        @Override
+        public List<byte[]> multiGet(ColumnFamilyHandle cf, ReadOptions ro, List<byte[]> keys) throws RocksDBException {
+            return db.multiGetAsList(ro, Collections.nCopies(keys.size(), cf), keys);
+        }
+
         @Override
         public void write(RocksWriteBatch batch) throws RocksDBException {
             if (batch.isEmpty()) return;
-            try (WriteOptions wo = new WriteOptions(); WriteBatch wb = new WriteBatch()) {
+            if (admission != null) admission.admit();
+            if (groupCommitter != null) {
+                groupCommitter.write(batch);
+                return;
+            }
+            Durability durability = (batch.durability() != null) ? batch.durability() : Durability.WAL;
+            try (WriteOptions wo = durability.newWriteOptions(); WriteBatch wb = new WriteBatch()) {
                 for (var op : batch.ops()) {
                     if (op instanceof RocksWriteBatch.Put p) wb.put(p.cf(), p.key(), p.value());
                     else if (op instanceof RocksWriteBatch.Delete d) wb.delete(d.cf(), d.key());
+                    else if (op instanceof RocksWriteBatch.Merge m) wb.merge(m.cf(), m.key(), m.operand());
                 }
                 db.write(wo, wb);
             }
@@ -51,10 +180,10 @@ public final class SpringRocksSessions implements RocksSessions {
 
     private static final class TxBoundSession implements RocksSession {
         @SuppressWarnings("unused")
-        private final TransactionDB db; // not strictly needed, but handy if you extend later
+        private final RocksDB db; // not strictly needed, but handy if you extend later
         private final Transaction txn;
 
-        TxBoundSession(TransactionDB db, Transaction txn) {
+        TxBoundSession(RocksDB db, Transaction txn) {
             this.db = db;
             this.txn = txn;
         }
@@ -72,16 +201,29 @@ public final class SpringRocksSessions implements RocksSessions {
             return txn.get(cf, ro, key); // sees uncommitted txn writes
         }
 
+        @Override
+        public byte[] getForUpdate(ColumnFamilyHandle cf, ReadOptions ro, byte[] key) throws RocksDBException {
+            return txn.getForUpdate(ro, cf, key, true); // PESSIMISTIC: locks the key; OPTIMISTIC: tracked and validated at commit
+        }
+
         @Override
         public RocksIterator iterator(ColumnFamilyHandle cf, ReadOptions ro) {
             return txn.getIterator(ro, cf); // can include uncommitted txn writes
         }
 
+        @Override public boolean isTransactional() { return true; }
+
+        @Override
+        public List<byte[]> multiGet(ColumnFamilyHandle cf, ReadOptions ro, List<byte[]> keys) throws RocksDBException {
+            return txn.multiGetAsList(ro, Collections.nCopies(keys.size(), cf), keys); // sees uncommitted txn writes
+        }
+
         @Override
         public void write(RocksWriteBatch batch) throws RocksDBException {
             for (var op : batch.ops()) {
                 if (op instanceof RocksWriteBatch.Put p) txn.put(p.cf(), p.key(), p.value());
                 else if (op instanceof RocksWriteBatch.Delete d) txn.delete(d.cf(), d.key());
+                else if (op instanceof RocksWriteBatch.Merge m) txn.merge(m.cf(), m.key(), m.operand());
             }
         }
     }
@@ -0,0 +1,23 @@
+package org.github.dbjo.rdb;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** Paces callers sharing one instance to a rate of units per second; 0 means unthrottled. */
+final class Throttle {
+    private final long nanosPerUnit;
+    private final AtomicLong nextPermit = new AtomicLong(System.nanoTime());
+
+    Throttle(long maxPerSecond) {
+        this.nanosPerUnit = (maxPerSecond > 0) ? Math.max(1, 1_000_000_000L / maxPerSecond) : 0;
+    }
+
+    void acquire(int units) {
+        if (nanosPerUnit == 0 || units <= 0) return;
+        long cost = nanosPerUnit * units;
+        long now = System.nanoTime();
+        long at = nextPermit.getAndUpdate(p -> Math.max(p, now) + cost);
+        long wait = at - now;
+        if (wait > 0) LockSupport.parkNanos(wait);
+    }
+}
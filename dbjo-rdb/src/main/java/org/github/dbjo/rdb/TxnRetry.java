@@ -0,0 +1,62 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Status;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/** Retry policy for transactions that lose a lock or validation race. */
+final class TxnRetry {
+    private TxnRetry() {}
+
+    static final int MAX_ATTEMPTS = 8;
+
+    /** Busy, TimedOut and TryAgain mean "another writer got there first"; anything else is a real failure. */
+    static boolean retryable(RocksDBException e) {
+        Status st = e.getStatus();
+        if (st == null) return false;
+        return switch (st.getCode()) {
+            case Busy, TimedOut, TryAgain -> true;
+            default -> false;
+        };
+    }
+
+    /** Exponential pause before attempt {@code attempt + 1}: 20ms, 40ms, ... capped at 640ms. */
+    static void backoff(int attempt) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L << Math.min(Math.max(attempt, 1), 6)));
+    }
+
+    /**
+     * Randomized pause for short transactions: uniform in [0, 100us * 2^attempt), capped at 6.4ms.
+     * The jitter keeps writers that collided once from colliding again in lockstep.
+     */
+    static void jitteredBackoff(int attempt) {
+        long max = TimeUnit.MICROSECONDS.toNanos(100L << Math.min(Math.max(attempt, 0), 6));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(max));
+    }
+
+    interface Attempt<R> {
+        R run() throws RocksDBException;
+    }
+
+    /** Runs {@code attempt} until it succeeds, fails for real, or has conflicted {@code maxAttempts} times. */
+    static <R> R run(int maxAttempts, RetryMetrics metrics, Attempt<R> attempt) throws RocksDBException {
+        metrics.recordCall();
+        for (int n = 1; ; n++) {
+            try {
+                return attempt.run();
+            } catch (RocksDBException e) {
+                if (!retryable(e)) throw e;
+                metrics.recordConflict(e.getStatus().getCode());
+                if (n >= maxAttempts) {
+                    metrics.recordExhausted();
+                    throw e;
+                }
+                metrics.recordRetry();
+                jitteredBackoff(n);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.github.dbjo.rdb;
+
+/** A write would have given a value of an enforced {@link IndexDef.Layout#DIRECT} index a second row. */
+public final class UniqueConstraintException extends RuntimeException {
+    private final String index;
+    private final byte[] valueKey;
+
+    public UniqueConstraintException(String index, byte[] valueKey) {
+        super("Duplicate value for unique index " + index);
+        this.index = index;
+        this.valueKey = valueKey.clone();
+    }
+
+    public String index() { return index; }
+
+    /** The encoded value that is already taken. */
+    public byte[] valueKey() { return valueKey.clone(); }
+}
@@ -0,0 +1,89 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Atomic multi-DAO writes with read-your-writes and no locking, on any engine. While open, the unit is
+ * bound to the calling thread, so DAOs built on {@link SpringRocksSessions} buffer their writes in one
+ * {@code WriteBatchWithIndex} and read through it; {@link #commit()} lands them with a single
+ * {@code db.write}. Reads see the DB as of {@link #begin}. Nothing is locked or validated: a concurrent
+ * writer of the same keys is simply overwritten at commit.
+ * <pre>{@code
+ * try (UnitOfWork uow = UnitOfWork.begin(db)) {
+ *     users.upsert(id, user);
+ *     audit.upsert(eventId, event);
+ *     uow.commit();
+ * }
+ * }</pre>
+ * Inside Spring, {@link RocksDbTransactionManager#unitOfWork()} gives the same behaviour to a transaction.
+ * Opened with a {@link WriteAdmission}, the unit passes it once, at commit.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private final WriteBatchSession session;
+    private boolean open = true;
+
+    private UnitOfWork(WriteBatchSession session) {
+        this.session = session;
+    }
+
+    /** Opens a unit bound to the calling thread; fails if a transaction or unit is already bound. */
+    public static UnitOfWork begin(RocksDB db) {
+        return begin(db, null);
+    }
+
+    /**
+     * As {@link #begin(RocksDB)}, with commits gated by {@code admission} (null: none) at the calling
+     * thread's {@link WritePriority}. A refused commit throws {@link WriteStallException} and drops the unit.
+     */
+    public static UnitOfWork begin(RocksDB db, WriteAdmission admission) {
+        Objects.requireNonNull(db);
+        if (TransactionSynchronizationManager.hasResource(RocksDbTransactionManager.Keys.TXN)) {
+            throw new IllegalStateException("A transaction is already bound to this thread");
+        }
+        WriteBatchSession s = new WriteBatchSession(db, Durability.scopedOr(Durability.WAL), admission);
+        TransactionSynchronizationManager.bindResource(RocksDbTransactionManager.Keys.TXN, s);
+        return new UnitOfWork(s);
+    }
+
+    /** Runs {@code work} in a unit and commits it if {@code work} returns normally. */
+    public static <R> R run(RocksDB db, Supplier<R> work) {
+        try (UnitOfWork uow = begin(db)) {
+            R r = work.get();
+            uow.commit();
+            return r;
+        }
+    }
+
+    /** The bound session, for code that talks to {@link RocksSession} directly. */
+    public RocksSession session() {
+        return session;
+    }
+
+    /** Writes everything buffered in one atomic batch, then closes the unit. */
+    public void commit() {
+        if (!open) throw new IllegalStateException("Unit of work is closed");
+        try {
+            session.commit();
+        } catch (RocksDBException e) {
+            throw new RocksDaoException("unit of work commit failed", e);
+        } finally {
+            close();
+        }
+    }
+
+    /** Unbinds the unit, dropping anything not committed. */
+    @Override
+    public void close() {
+        if (!open) return;
+        open = false;
+        TransactionSynchronizationManager.unbindResourceIfPossible(RocksDbTransactionManager.Keys.TXN);
+        TransactionSynchronizationManager.unbindResourceIfPossible(RocksDbTransactionManager.SAVEPOINTS);
+        session.close();
+    }
+}
@@ -0,0 +1,195 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Admission control for writes, ahead of RocksDB's own write stalls. A sampler reads the stall signals
+ * every {@code sampleInterval}: L0 file count and pending compaction bytes of each watched CF, the
+ * delayed-write rate and the stopped flag. From them it derives a pressure from 0 (idle) to 1 (writes
+ * stopped). Each signal ramps linearly from its start to its stop value. While RocksDB is already
+ * delaying writes, the pressure is at least {@code DELAYED_FLOOR}.
+ * <p>
+ * Each {@link WritePriority} has two thresholds. Below {@code throttleAt} a write goes straight through.
+ * From there to {@code rejectAt} it first sleeps up to {@code maxDelay}, in proportion to how far into
+ * that band the pressure is. At {@code rejectAt} and above it fails with a {@link WriteStallException}
+ * instead of hanging inside RocksDB. By default {@code BATCH} is throttled from 0.3 and refused from 0.8;
+ * {@code ONLINE} is throttled from 0.7 and refused only when writes are stopped.
+ * <p>
+ * Install it with {@link SpringRocksSessions#setWriteAdmission} (auto-commit writes and atomic updates)
+ * and {@link RocksDbTransactionManager#setWriteAdmission} (checked when a read-write transaction begins).
+ */
+public final class WriteAdmission implements AutoCloseable {
+
+    private static final double DELAYED_FLOOR = 0.75;
+
+    /** One sample of the stall signals; the counts are the worst over the watched CFs. */
+    public record Signals(long l0Files, long pendingCompactionBytes, long delayedWriteRate, boolean stopped, double pressure) {}
+
+    private record Limits(double throttleAt, double rejectAt) {}
+
+    private final RocksDB db;
+    private final List<ColumnFamilyHandle> cfs;
+    private final long l0Start, l0Stop;
+    private final long pendingStart, pendingStop;
+    private final long maxDelayNanos;
+    private final EnumMap<WritePriority, Limits> limits;
+    private final ScheduledExecutorService sampler;
+
+    private volatile Signals signals = new Signals(0, 0, 0, false, 0.0);
+
+    private final EnumMap<WritePriority, LongAdder> admitted = counters();
+    private final EnumMap<WritePriority, LongAdder> delayed = counters();
+    private final EnumMap<WritePriority, LongAdder> rejected = counters();
+    private final LongAdder delayNanos = new LongAdder();
+
+    private WriteAdmission(Builder b) {
+        if (b.l0Start >= b.l0Stop) throw new IllegalArgumentException("l0 start must be < stop");
+        if (b.pendingStart >= b.pendingStop) throw new IllegalArgumentException("pending compaction start must be < stop");
+        this.db = b.db;
+        this.cfs = List.copyOf(b.cfs);
+        this.l0Start = b.l0Start;
+        this.l0Stop = b.l0Stop;
+        this.pendingStart = b.pendingStart;
+        this.pendingStop = b.pendingStop;
+        this.maxDelayNanos = b.maxDelay.toNanos();
+        this.limits = new EnumMap<>(b.limits);
+        sample();
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dbjo-write-admission");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = b.sampleInterval.toNanos();
+        sampler.scheduleWithFixedDelay(this::sample, every, every, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Watches {@code cfs}. The defaults fit RocksDB's default triggers: pressure rises from 10 L0 files (half
+     * the slowdown trigger) to 36 (the stop trigger), and from 32 GiB pending compaction (half the soft
+     * limit) to 256 GiB (the hard limit).
+     */
+    public static Builder builder(RocksDB db, Collection<ColumnFamilyHandle> cfs) {
+        return new Builder(db, cfs);
+    }
+
+    public static final class Builder {
+        private final RocksDB db;
+        private final List<ColumnFamilyHandle> cfs;
+        private long l0Start = 10, l0Stop = 36;
+        private long pendingStart = 32L << 30, pendingStop = 256L << 30;
+        private Duration sampleInterval = Duration.ofMillis(100);
+        private Duration maxDelay = Duration.ofMillis(50);
+        private final EnumMap<WritePriority, Limits> limits = new EnumMap<>(WritePriority.class);
+
+        private Builder(RocksDB db, Collection<ColumnFamilyHandle> cfs) {
+            this.db = Objects.requireNonNull(db);
+            this.cfs = List.copyOf(cfs);
+            limits.put(WritePriority.ONLINE, new Limits(0.7, 1.0));
+            limits.put(WritePriority.BATCH, new Limits(0.3, 0.8));
+        }
+
+        /** L0 file counts where pressure starts rising and where it reaches 1 (match the CF's stop trigger). */
+        public Builder l0Files(long start, long stop) { this.l0Start = start; this.l0Stop = stop; return this; }
+        /** Pending compaction bytes where pressure starts rising and where it reaches 1 (the hard limit). */
+        public Builder pendingCompactionBytes(long start, long stop) { this.pendingStart = start; this.pendingStop = stop; return this; }
+        public Builder sampleInterval(Duration d) { this.sampleInterval = Objects.requireNonNull(d); return this; }
+        /** Longest a throttled write sleeps, reached just below its {@code rejectAt} (default 50ms). */
+        public Builder maxDelay(Duration d) { this.maxDelay = Objects.requireNonNull(d); return this; }
+
+        /** Pressures (0..1) where {@code priority} starts being slowed and where it is refused. */
+        public Builder priority(WritePriority priority, double throttleAt, double rejectAt) {
+            if (!(0 <= throttleAt && throttleAt < rejectAt && rejectAt <= 1)) {
+                throw new IllegalArgumentException("Need 0 <= throttleAt < rejectAt <= 1");
+            }
+            limits.put(Objects.requireNonNull(priority), new Limits(throttleAt, rejectAt));
+            return this;
+        }
+
+        public WriteAdmission build() { return new WriteAdmission(this); }
+    }
+
+    /**
+     * Lets one write of the calling thread's {@link WritePriority} through, after a proportional pause
+     * when pressure is high; throws {@link WriteStallException} when it is too high for that priority.
+     */
+    public void admit() {
+        WritePriority prio = WritePriority.current();
+        Limits l = limits.get(prio);
+        Signals s = signals;
+        double p = s.pressure();
+        if (p < l.throttleAt()) {
+            admitted.get(prio).increment();
+            return;
+        }
+        if (p >= l.rejectAt()) {
+            rejected.get(prio).increment();
+            throw new WriteStallException(prio, s);
+        }
+        long pause = (long) (maxDelayNanos * (p - l.throttleAt()) / (l.rejectAt() - l.throttleAt()));
+        if (pause > 0) {
+            LockSupport.parkNanos(pause);
+            delayNanos.add(pause);
+        }
+        delayed.get(prio).increment();
+        admitted.get(prio).increment();
+    }
+
+    /** The latest sample. */
+    public Signals signals() { return signals; }
+
+    public long admitted(WritePriority p) { return admitted.get(p).sum(); }
+    /** Admitted writes that were paused first. */
+    public long delayed(WritePriority p) { return delayed.get(p).sum(); }
+    public long rejected(WritePriority p) { return rejected.get(p).sum(); }
+    /** Total pause imposed on writers. */
+    public Duration totalDelay() { return Duration.ofNanos(delayNanos.sum()); }
+
+    /** Stops sampling; the last sample stays in force for writers still holding this instance. */
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    /** Takes a sample now (also run by the sampler thread). */
+    void sample() {
+        try {
+            long l0 = 0, pendingBytes = 0;
+            for (ColumnFamilyHandle cf : cfs) {
+                // a string property: getLongProperty does not serve it
+                l0 = Math.max(l0, Long.parseLong(db.getProperty(cf, "rocksdb.num-files-at-level0").trim()));
+                pendingBytes = Math.max(pendingBytes, db.getLongProperty(cf, "rocksdb.estimate-pending-compaction-bytes"));
+            }
+            long delayedRate = db.getLongProperty("rocksdb.actual-delayed-write-rate");
+            boolean stopped = db.getLongProperty("rocksdb.is-write-stopped") != 0;
+
+            double p = Math.max(ramp(l0, l0Start, l0Stop), ramp(pendingBytes, pendingStart, pendingStop));
+            if (delayedRate > 0) p = Math.max(p, DELAYED_FLOOR);
+            if (stopped) p = 1.0;
+            signals = new Signals(l0, pendingBytes, delayedRate, stopped, p);
+        } catch (RocksDBException | RuntimeException e) {
+            // keep the last sample; a closed DB fails the writes themselves
+        }
+    }
+
+    private static double ramp(long v, long start, long stop) {
+        if (v <= start) return 0.0;
+        if (v >= stop) return 1.0;
+        return (double) (v - start) / (stop - start);
+    }
+
+    private static EnumMap<WritePriority, LongAdder> counters() {
+        EnumMap<WritePriority, LongAdder> m = new EnumMap<>(WritePriority.class);
+        for (WritePriority p : WritePriority.values()) m.put(p, new LongAdder());
+        return m;
+    }
+}
@@ -0,0 +1,89 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.*;
+
+/**
+ * A lock-free transaction ({@link UnitOfWork}, and every transaction on the {@link RocksProps.Engine#PLAIN}
+ * engine): writes from every DAO are buffered in one {@link WriteBatchWithIndex}, reads merge that batch
+ * over the DB as of a snapshot taken at begin, and {@link #commit} applies everything with one atomic
+ * {@code db.write}. Nothing is locked or validated, so {@link #getForUpdate} is a plain read. Not thread-safe.
+ */
+final class WriteBatchSession implements RocksSession, AutoCloseable {
+    private final RocksDB db;
+    private final WriteBatchWithIndex batch = new WriteBatchWithIndex(true); // later writes to a key replace earlier ones
+    private final Snapshot snapshot;
+    private final Durability durability;
+    private final WriteAdmission admission; // null: checked by the caller, or not at all
+
+    WriteBatchSession(RocksDB db, Durability durability) {
+        this(db, durability, null);
+    }
+
+    WriteBatchSession(RocksDB db, Durability durability, WriteAdmission admission) {
+        this.db = db;
+        this.durability = durability;
+        this.admission = admission;
+        this.snapshot = db.getSnapshot();
+    }
+
+    Snapshot snapshot() { return snapshot; }
+
+    @Override
+    public ReadOptions newReadOptions() {
+        return new ReadOptions().setSnapshot(snapshot);
+    }
+
+    @Override
+    public byte[] get(ColumnFamilyHandle cf, ReadOptions ro, byte[] key) throws RocksDBException {
+        return batch.getFromBatchAndDB(db, cf, ro, key);
+    }
+
+    @Override
+    public RocksIterator iterator(ColumnFamilyHandle cf, ReadOptions ro) {
+        return batch.newIteratorWithBase(cf, db.newIterator(cf, ro), ro); // the result owns the base iterator
+    }
+
+    @Override
+    public void write(RocksWriteBatch ops) throws RocksDBException {
+        for (var op : ops.ops()) {
+            if (op instanceof RocksWriteBatch.Put p) batch.put(p.cf(), p.key(), p.value());
+            else if (op instanceof RocksWriteBatch.Delete d) batch.delete(d.cf(), d.key());
+            else if (op instanceof RocksWriteBatch.Merge m) batch.merge(m.cf(), m.key(), m.operand());
+        }
+    }
+
+    @Override public boolean isTransactional() { return true; }
+
+    /** Buffered writes are not admitted one by one; with an admission gate, the commit passes it once. */
+    void commit() throws RocksDBException {
+        if (batch.count() == 0) return;
+        if (admission != null) admission.admit();
+        try (WriteOptions wo = durability.newWriteOptions()) {
+            db.write(wo, batch);
+        }
+    }
+
+    void rollback() {
+        batch.clear();
+    }
+
+    void setSavePoint() {
+        batch.setSavePoint();
+    }
+
+    /** Drops the writes since the newest savepoint, and the savepoint. */
+    void rollbackToSavePoint() throws RocksDBException {
+        batch.rollbackToSavePoint();
+    }
+
+    /** Drops the newest savepoint, keeping its writes. */
+    void popSavePoint() throws RocksDBException {
+        batch.popSavePoint();
+    }
+
+    @Override
+    public void close() {
+        db.releaseSnapshot(snapshot);
+        batch.close();
+    }
+}
@@ -0,0 +1,437 @@
+package org.github.dbjo.rdb;
+
+import org.rocksdb.RocksDBException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Write-behind in front of a DAO: writes land in an in-memory map, one pending value per key, so a key
+ * overwritten many times between flushes costs one row write and one index diff. Pending values (and
+ * deletes) are visible to this wrapper's reads, not to the DAO's or other processes'.
+ * <p>
+ * A flush writes the pending upserts and deletes in chunks of {@code flushSize}, each chunk one write batch
+ * (rows and index changes together, one {@link WriteAdmission} check), after {@code flushInterval}, once
+ * {@code flushSize} keys are pending, on {@link #flush()} and on {@link #close()}. Flushes run one at a
+ * time on the wrapper's own thread, in auto-commit sessions: writes bypass any transaction bound to the
+ * writing thread. A chunk that fails on the DB (an I/O error, a {@link WriteStallException}) keeps its
+ * entries for the next flush. One that fails otherwise (e.g. a {@link UniqueConstraintException}, a codec
+ * error) is retried key by key, and the keys that still fail are dropped and reported (see
+ * {@link Builder#onDropped}, {@link #dropped()}), so one bad write cannot hold up the rest. At
+ * {@code maxPending} keys a writer of a new key either waits for a flush ({@link Overflow#BLOCK}) or is
+ * refused ({@link Overflow#REJECT}). Flushes write at {@link WritePriority#BATCH}, so under
+ * {@link WriteAdmission} they yield to online writes.
+ * <p>
+ * Anything still pending is lost if the process dies: use it for data that may lag or be lost, such as
+ * telemetry, not for data another reader must see at once.
+ */
+public final class WriteBehindDao<T, K> implements Dao<T, K> {
+
+    public enum Overflow { BLOCK, REJECT }
+
+    /**
+     * Told of each write dropped by a flush: its key, its value (null for a delete) and why. Runs on the
+     * flush thread: it may write back to the wrapper, but a write that would wait for room is refused
+     * with {@link RejectedExecutionException} whatever the {@link Overflow}, and {@link #flush()} fails.
+     */
+    @FunctionalInterface
+    public interface DropListener<K, T> {
+        void dropped(K key, T valueOrNull, RuntimeException cause);
+    }
+
+    /**
+     * A pending write; {@code value} null is a delete. Compared by identity, so the map's conditional
+     * remove/replace only succeed on the very entry that was read.
+     */
+    private static final class Pending<K, T> {
+        final K key;
+        final T value;
+        /** Held by a compute while it reads the stored value; invisible to reads and flushes. */
+        final boolean loading;
+
+        Pending(K key, T value, boolean loading) {
+            this.key = key;
+            this.value = value;
+            this.loading = loading;
+        }
+
+        Pending(K key, T value) {
+            this(key, value, false);
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(WriteBehindDao.class.getName());
+
+    private final AbstractRocksDao<T, K> dao;
+    private final int flushSize;
+    private final int maxPending;
+    private final Overflow overflow;
+    private final DropListener<K, T> onDropped;
+
+    private final ConcurrentHashMap<ByteArrayKey, Pending<K, T>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile Thread flushThread;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock(); // writers share, close excludes
+    private volatile boolean closed;
+    private volatile RuntimeException lastFailure;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsFlushed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private WriteBehindDao(Builder<T, K> b) {
+        if (b.flushSize <= 0) throw new IllegalArgumentException("flushSize must be > 0");
+        if (b.maxPending < b.flushSize) throw new IllegalArgumentException("maxPending must be >= flushSize");
+        if (b.flushInterval.isNegative() || b.flushInterval.isZero()) throw new IllegalArgumentException("flushInterval must be > 0");
+        this.dao = b.dao;
+        this.flushSize = b.flushSize;
+        this.maxPending = b.maxPending;
+        this.overflow = b.overflow;
+        this.onDropped = b.onDropped;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dbjo-write-behind");
+            t.setDaemon(true);
+            flushThread = t;
+            return t;
+        });
+        long every = b.flushInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, every, every, TimeUnit.NANOSECONDS);
+    }
+
+    public static <T, K> Builder<T, K> builder(AbstractRocksDao<T, K> dao) {
+        return new Builder<>(dao);
+    }
+
+    public static final class Builder<T, K> {
+        private final AbstractRocksDao<T, K> dao;
+        private int flushSize = 1024;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private int maxPending = 64 * 1024;
+        private Overflow overflow = Overflow.BLOCK;
+        private DropListener<K, T> onDropped = (key, value, cause) ->
+                LOG.log(System.Logger.Level.WARNING, "write-behind dropped a write of " + key, cause);
+
+        private Builder(AbstractRocksDao<T, K> dao) {
+            this.dao = Objects.requireNonNull(dao);
+        }
+
+        /** Keys per write batch, and the pending count that starts a flush early (default 1024). */
+        public Builder<T, K> flushSize(int n) { this.flushSize = n; return this; }
+        /** Longest a write stays pending while flushes succeed (default 200ms). */
+        public Builder<T, K> flushInterval(Duration d) { this.flushInterval = Objects.requireNonNull(d); return this; }
+        /** Pending keys at which writers of new keys hit {@code overflow} (default 65536). */
+        public Builder<T, K> maxPending(int n) { this.maxPending = n; return this; }
+        public Builder<T, K> overflow(Overflow o) { this.overflow = Objects.requireNonNull(o); return this; }
+        /** Called on the flush thread for each write a flush gives up on (default: logs a warning). */
+        public Builder<T, K> onDropped(DropListener<K, T> l) { this.onDropped = Objects.requireNonNull(l); return this; }
+        public WriteBehindDao<T, K> build() { return new WriteBehindDao<>(this); }
+    }
+
+    @Override
+    public Optional<T> findByKey(K key) {
+        Pending<K, T> p = visible(keyOf(key));
+        if (p != null) return Optional.ofNullable(p.value);
+        return dao.findByKey(key);
+    }
+
+    @Override
+    public Map<K, T> getAll(Collection<K> keys) {
+        Map<K, T> out = new LinkedHashMap<>();
+        List<K> rest = new ArrayList<>();
+        Map<K, Pending<K, T>> hits = new HashMap<>();
+        for (K k : keys) {
+            Pending<K, T> p = visible(keyOf(k));
+            if (p != null) hits.put(k, p);
+            else rest.add(k);
+        }
+        Map<K, T> stored = rest.isEmpty() ? Map.of() : dao.getAll(rest);
+        for (K k : keys) {
+            Pending<K, T> p = hits.get(k);
+            T v = (p != null) ? p.value : stored.get(k);
+            if (v != null) out.put(k, v);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        Pending<K, T> p = visible(keyOf(key));
+        if (p != null) return p.value != null;
+        return dao.containsKey(key);
+    }
+
+    @Override
+    public void upsert(K key, T value) {
+        Objects.requireNonNull(value);
+        put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<K, T> entries) {
+        for (var e : entries.entrySet()) upsert(e.getKey(), e.getValue());
+    }
+
+    /** Queues a delete; returns whether the key had a value (pending or stored) at the time of the call. */
+    @Override
+    public boolean delete(K key) {
+        boolean existed = containsKey(key);
+        put(key, null);
+        return existed;
+    }
+
+    /**
+     * Atomic against other writes through this wrapper only. {@code fn} may run more than once, when
+     * another write of the key gets in between.
+     */
+    @Override
+    public Optional<T> update(K key, UnaryOperator<T> fn) {
+        return Optional.ofNullable(computePending(key, fn, true));
+    }
+
+    @Override
+    public T compute(K key, UnaryOperator<T> fn) {
+        return computePending(key, fn, false);
+    }
+
+    /** Flushes first, so the iteration sees this wrapper's writes so far. */
+    @Override
+    public void forEach(Consumer<Map.Entry<K, T>> consumer) {
+        flush();
+        dao.forEach(consumer);
+    }
+
+    @Override
+    public long approximateSize() {
+        return dao.approximateSize();
+    }
+
+    /** Writes everything pending now and waits for it; throws if that fails. */
+    public void flush() {
+        if (Thread.currentThread() == flushThread) {
+            throw new IllegalStateException("flush() from a drop listener would wait on its own flush");
+        }
+        try {
+            flusher.submit(this::flushNow).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RocksDaoException("write-behind flush failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RocksDaoException("interrupted waiting for write-behind flush", e);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Write-behind DAO is closed", e);
+        }
+    }
+
+    /** Flushes, then stops the flush thread. The wrapped DAO stays open. */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock(); // waits out writers between their closed check and their insert
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flush();
+        } finally {
+            flusher.shutdown();
+        }
+    }
+
+    /** Keys with a write not yet flushed. */
+    public int pending() { return pending.size(); }
+    /** Writes accepted (upserts, deletes, computes). */
+    public long writes() { return writes.sum(); }
+    /** Writes that replaced a still-pending write of the same key, i.e. row writes saved. */
+    public long coalesced() { return coalesced.sum(); }
+    public long flushes() { return flushes.sum(); }
+    public long rowsFlushed() { return rowsFlushed.sum(); }
+    /** Writes given up on by flushes, each reported to {@link Builder#onDropped}. */
+    public long dropped() { return dropped.sum(); }
+    /** The error of the last failed background flush, or null once one succeeds. */
+    public RuntimeException lastFailure() { return lastFailure; }
+
+    private void put(K key, T valueOrNull) {
+        ByteArrayKey kb = keyOf(key);
+        closeLock.readLock().lock();
+        try {
+            admit(kb);
+            if (pending.put(kb, new Pending<>(key, valueOrNull)) != null) coalesced.increment();
+            writes.increment();
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        afterWrite();
+    }
+
+    /**
+     * Compare-and-set on the key's map slot. A key with no pending write is first reserved with a
+     * {@code loading} entry, so the stored value is read outside the map's locks and no flush of the key
+     * can land between that read and the write based on it.
+     */
+    private T computePending(K key, UnaryOperator<T> fn, boolean onlyIfPresent) {
+        Objects.requireNonNull(fn);
+        ByteArrayKey kb = keyOf(key);
+        T next;
+        closeLock.readLock().lock();
+        try {
+            admit(kb);
+            while (true) {
+                Pending<K, T> p = pending.get(kb);
+                if (p != null && p.loading) {
+                    Thread.yield(); // another compute is reading the key
+                    continue;
+                }
+                Pending<K, T> base = p;
+                T old;
+                if (p == null) {
+                    base = new Pending<>(key, null, true);
+                    if (pending.putIfAbsent(kb, base) != null) continue;
+                    try {
+                        old = dao.findByKey(key).orElse(null);
+                    } catch (RuntimeException e) {
+                        pending.remove(kb, base);
+                        throw e;
+                    }
+                } else {
+                    old = p.value;
+                }
+                if (old == null && onlyIfPresent) {
+                    if (p == null) pending.remove(kb, base);
+                    return null;
+                }
+                try {
+                    next = fn.apply(old);
+                } catch (RuntimeException e) {
+                    if (p == null) pending.remove(kb, base);
+                    throw e;
+                }
+                boolean swapped = (next == null && old == null)
+                        ? p != null || pending.remove(kb, base)
+                        : pending.replace(kb, base, new Pending<>(key, next));
+                if (!swapped) continue; // a put replaced the entry meanwhile: start over from it
+                if (next == null && old == null) return null;
+                if (p != null) coalesced.increment();
+                writes.increment();
+                break;
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        afterWrite();
+        return next;
+    }
+
+    /** The pending write of {@code kb} that reads should see, or null. */
+    private Pending<K, T> visible(ByteArrayKey kb) {
+        Pending<K, T> p = pending.get(kb);
+        return (p == null || p.loading) ? null : p;
+    }
+
+    /** Backpressure: a new key may only be added below {@code maxPending}. */
+    private void admit(ByteArrayKey kb) {
+        if (closed) throw new IllegalStateException("Write-behind DAO is closed");
+        while (pending.size() >= maxPending && !pending.containsKey(kb)) {
+            // the flush thread (a drop listener writing back) cannot wait for a flush: it would wait on itself
+            if (overflow == Overflow.REJECT || Thread.currentThread() == flushThread) {
+                throw new RejectedExecutionException("Write-behind buffer full (" + maxPending + " keys pending)");
+            }
+            flush();
+        }
+    }
+
+    private void afterWrite() {
+        if (pending.size() >= flushSize && flushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushQueued.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushQueued.set(false); // closing: close() flushes
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushNow();
+        } catch (RuntimeException e) {
+            lastFailure = e; // entries stay pending for the next flush
+        }
+    }
+
+    /** Runs on the flush thread only, so flushes never overlap or reorder writes of a key. */
+    private void flushNow() {
+        WritePriority.BATCH.run(this::flushPending); // coalesced, deferrable writes yield to online ones
+    }
+
+    private void flushPending() {
+        List<Map.Entry<ByteArrayKey, Pending<K, T>>> taken = new ArrayList<>(pending.size());
+        for (var e : pending.entrySet()) {
+            if (!e.getValue().loading) taken.add(Map.entry(e.getKey(), e.getValue()));
+        }
+        if (taken.isEmpty()) return;
+
+        for (int from = 0; from < taken.size(); from += flushSize) {
+            List<Map.Entry<ByteArrayKey, Pending<K, T>>> chunk = taken.subList(from, Math.min(taken.size(), from + flushSize));
+            try {
+                write(chunk);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) throw e; // entries stay pending for the next flush
+                for (var one : chunk) {
+                    try {
+                        write(List.of(one));
+                    } catch (RuntimeException ke) {
+                        if (isTransient(ke)) throw ke;
+                        drop(one, ke);
+                    }
+                }
+            }
+        }
+        flushes.increment();
+        lastFailure = null;
+    }
+
+    /** One write batch for the chunk; its entries leave the map only once it is written. */
+    private void write(List<Map.Entry<ByteArrayKey, Pending<K, T>>> chunk) {
+        Map<K, T> valuesOrNull = new LinkedHashMap<>();
+        for (var e : chunk) valuesOrNull.put(e.getValue().key, e.getValue().value);
+        dao.applyAll(valuesOrNull);
+        // only now drop them, and only if not overwritten meanwhile: readers never see a gap
+        for (var e : chunk) pending.remove(e.getKey(), e.getValue());
+        rowsFlushed.add(chunk.size());
+    }
+
+    private void drop(Map.Entry<ByteArrayKey, Pending<K, T>> e, RuntimeException cause) {
+        if (!pending.remove(e.getKey(), e.getValue())) return; // overwritten meanwhile: the new write gets its own try
+        dropped.increment();
+        try {
+            onDropped.dropped(e.getValue().key, e.getValue().value, cause);
+        } catch (RuntimeException ignored) {
+            // a failing listener must not stop the flush
+        }
+    }
+
+    /** Failures of the DB itself, which a later flush may get past; anything else fails the same way again. */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof WriteStallException
+                || (e instanceof RocksDaoException && e.getCause() instanceof RocksDBException);
+    }
+
+    private ByteArrayKey keyOf(K key) {
+        return new ByteArrayKey(dao.keyCodec.encodeKey(Objects.requireNonNull(key)));
+    }
+}
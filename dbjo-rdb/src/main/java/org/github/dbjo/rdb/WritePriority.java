@@ -0,0 +1,35 @@
+package org.github.dbjo.rdb;
+
+import java.util.function.Supplier;
+
+/**
+ * Who yields first when {@link WriteAdmission} sees RocksDB falling behind: {@code BATCH} writes are
+ * slowed and refused at lower pressure than {@code ONLINE} ones. Writes are {@code ONLINE} unless run
+ * inside {@link #call} / {@link #run} of another priority.
+ */
+public enum WritePriority {
+    ONLINE, BATCH;
+
+    private static final ThreadLocal<WritePriority> SCOPED = new ThreadLocal<>();
+
+    /** Runs {@code work} with every write on this thread at this priority. */
+    public <R> R call(Supplier<R> work) {
+        WritePriority prev = SCOPED.get();
+        SCOPED.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (prev == null) SCOPED.remove(); else SCOPED.set(prev);
+        }
+    }
+
+    public void run(Runnable work) {
+        call(() -> { work.run(); return null; });
+    }
+
+    /** The calling thread's priority. */
+    public static WritePriority current() {
+        WritePriority p = SCOPED.get();
+        return (p != null) ? p : ONLINE;
+    }
+}
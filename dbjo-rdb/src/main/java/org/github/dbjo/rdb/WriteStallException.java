@@ -0,0 +1,21 @@
+package org.github.dbjo.rdb;
+
+/**
+ * A write refused by {@link WriteAdmission} because RocksDB is close to stopping writes. Nothing was
+ * written; retry later, or shed the work.
+ */
+public final class WriteStallException extends RuntimeException {
+    private final WritePriority priority;
+    private final WriteAdmission.Signals signals;
+
+    public WriteStallException(WritePriority priority, WriteAdmission.Signals signals) {
+        super("Write refused at " + priority + " priority: " + signals);
+        this.priority = priority;
+        this.signals = signals;
+    }
+
+    public WritePriority priority() { return priority; }
+
+    /** What the admission control saw when it refused the write. */
+    public WriteAdmission.Signals signals() { return signals; }
+}
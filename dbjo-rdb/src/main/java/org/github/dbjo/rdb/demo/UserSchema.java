@@ -24,7 +24,7 @@ public final class UserSchema {
                 KeyCodec.stringUtf8(),
                 userCodec,
                 List.of(
-                        IndexDef.unique(IDX_EMAIL, IndexKeyCodec.stringUtf8(), User::getEmail)
+                        IndexDef.uniqueDirect(IDX_EMAIL, IndexKeyCodec.stringUtf8(), User::getEmail, true)
                 )
         );
     }
@@ -31,7 +31,7 @@ public class UserService {
         User u2 = new User(); u2.setId("u2"); u2.setEmail("bob@example.com"); u2.setName("Bob");
         userDao.upsert("u2", u2);
 
-        User u3 = new User(); u3.setId("u3"); u3.setEmail("alice@example.com"); u3.setName("Alice Clone");
+        User u3 = new User(); u3.setId("u3"); u3.setEmail("carol@example.com"); u3.setName("Carol");
         userDao.upsert("u3", u3);
     }
 
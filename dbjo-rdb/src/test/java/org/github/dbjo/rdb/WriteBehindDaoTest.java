@@ -0,0 +1,112 @@
+package org.github.dbjo.rdb;
+
+import org.github.dbjo.rdb.demo.UserSchema;
+import org.github.dbjo.rdb.demo.generated.dao.UserDao;
+import org.github.dbjo.rdb.demo.generated.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindDaoTest {
+
+    @TempDir
+    Path dir;
+
+    private RocksDbHandle handle;
+    private UserDao users;
+
+    @BeforeEach
+    void open() throws Exception {
+        handle = RocksDbBootstrap.open(new RocksProps(dir.toString()),
+                List.of(RocksSchema.of(UserSchema.USERS_CF, UserSchema.IDX_EMAIL)));
+        users = new UserDao(new SpringRocksSessions(handle.db()), new DaoRegistry(handle.db(), handle.cfByName()));
+    }
+
+    @AfterEach
+    void close() {
+        handle.close();
+    }
+
+    @Test
+    void uniqueViolationIsDroppedAndTheRestFlushes() {
+        users.upsert("owner", new User("owner", "taken@x", "o"));
+        users.upsert("gone", new User("gone", "gone@x", "g"));
+        List<String> droppedKeys = new ArrayList<>();
+        List<RuntimeException> causes = new ArrayList<>();
+
+        try (WriteBehindDao<User, String> wb = WriteBehindDao.builder(users)
+                .flushSize(16)
+                .flushInterval(Duration.ofHours(1))
+                .onDropped((key, value, cause) -> { droppedKeys.add(key); causes.add(cause); })
+                .build()) {
+            for (int i = 0; i < 5; i++) wb.upsert("u" + i, new User("u" + i, "u" + i + "@x", "n"));
+            wb.upsert("bad", new User("bad", "taken@x", "b"));
+            wb.delete("gone");
+
+            wb.flush();
+
+            assertEquals(0, wb.pending());
+            assertEquals(1, wb.dropped());
+            assertEquals(List.of("bad"), droppedKeys);
+            assertInstanceOf(UniqueConstraintException.class, causes.get(0));
+            for (int i = 0; i < 5; i++) assertTrue(users.containsKey("u" + i), "u" + i);
+            assertFalse(users.containsKey("bad"));
+            assertFalse(users.containsKey("gone"));
+            assertEquals("owner", users.findUnique(UserSchema.IDX_EMAIL, "taken@x".getBytes()).orElseThrow().getId());
+            assertTrue(users.findUnique(UserSchema.IDX_EMAIL, "gone@x".getBytes()).isEmpty());
+
+            // the buffer keeps draining after the drop
+            wb.upsert("later", new User("later", "later@x", "l"));
+            wb.flush();
+            assertTrue(users.containsKey("later"));
+        }
+    }
+
+    @Test
+    void dropListenerCannotWaitOnItsOwnFlush() throws Exception {
+        users.upsert("owner", new User("owner", "taken@x", "o"));
+        List<String> seen = new ArrayList<>();
+        AtomicReference<WriteBehindDao<User, String>> ref = new AtomicReference<>();
+
+        try (WriteBehindDao<User, String> wb = WriteBehindDao.builder(users)
+                .flushSize(2)
+                .maxPending(2)
+                .flushInterval(Duration.ofHours(1))
+                .onDropped((key, value, cause) -> {
+                    for (int i = 0; i < 3; i++) {
+                        try {
+                            ref.get().upsert("r" + i, new User("r" + i, "r" + i + "@x", "n"));
+                            seen.add("r" + i);
+                        } catch (RejectedExecutionException e) {
+                            seen.add("rejected");
+                        }
+                    }
+                    try {
+                        ref.get().flush();
+                    } catch (IllegalStateException e) {
+                        seen.add("flush refused");
+                    }
+                })
+                .build()) {
+            ref.set(wb);
+            wb.upsert("bad", new User("bad", "taken@x", "b"));
+
+            CompletableFuture.runAsync(wb::flush).get(10, TimeUnit.SECONDS);
+
+            assertEquals(List.of("r0", "r1", "rejected", "flush refused"), seen);
+            assertEquals(2, wb.pending());
+        }
+    }
+}
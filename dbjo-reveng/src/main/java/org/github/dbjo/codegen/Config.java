@@ -55,7 +55,11 @@ public record Config(
 
         // Protobuf mapper generator
         String protoMapperPkg,
-        String protoMapperSuffix
+        String protoMapperSuffix,
+
+        // JDBC row mapper generator (migration)
+        String rowMapperPkg,
+        String rowMapperSuffix
 ) {
     // ---------------- defaults ----------------
     public static final String DEFAULT_URL    = "jdbc:hsqldb:hsql://localhost:9001/dbjo";
@@ -84,6 +88,9 @@ public record Config(
     public static final String DEFAULT_PROTO_MAPPER_PKG = "org.github.dbjo.generated.rdb.mapper";
     public static final String DEFAULT_PROTO_MAPPER_SUFFIX = "ProtoMapper";
 
+    public static final String DEFAULT_ROW_MAPPER_PKG = "org.github.dbjo.generated.rdb.jdbc";
+    public static final String DEFAULT_ROW_MAPPER_SUFFIX = "RowMapper";
+
     public enum RunMode {
         ALL, PROTO, ENTITY, DAO, MAPPER, RDB;
 
@@ -151,6 +158,9 @@ public record Config(
         String protoMapperPkg = am.get("protoMapperPkg", DEFAULT_PROTO_MAPPER_PKG);
         String protoMapperSuffix = am.get("protoMapperSuffix", DEFAULT_PROTO_MAPPER_SUFFIX);
 
+        String rowMapperPkg = am.get("rowMapperPkg", DEFAULT_ROW_MAPPER_PKG);
+        String rowMapperSuffix = am.get("rowMapperSuffix", DEFAULT_ROW_MAPPER_SUFFIX);
+
         return new Config(
                 driver, url, user, pass,
                 outBase, overwrite,
@@ -162,7 +172,8 @@ public record Config(
                 protocPath, protocInclude,
                 beanPkg, metaPkg, baseMetaPkg, codegenOutJava,
                 daoPkg, schemaPkg, daoClassSuffix, schemaClassSuffix, cfConstSuffix, daoBaseClass,
-                protoMapperPkg, protoMapperSuffix
+                protoMapperPkg, protoMapperSuffix,
+                rowMapperPkg, rowMapperSuffix
         );
     }
 
@@ -7,6 +7,7 @@ import org.github.dbjo.codegen.proto.ProtoGenerator;
 import org.github.dbjo.codegen.proto.ProtocInvoker;
 import org.github.dbjo.codegen.rdb.RocksDaoGenerator;
 import org.github.dbjo.codegen.rdb.ProtoMapperGenerator;
+import org.github.dbjo.codegen.rdb.RowMapperGenerator;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -79,6 +80,9 @@ public final class DbjoCodegen {
             if (cfg.runMode().runDao()) {
                 int n = new RocksDaoGenerator(cfg).generateAll(tables);
                 System.out.println("Generated RocksDB DAO(s): " + n);
+
+                int nr = new RowMapperGenerator(cfg).generateAll(tables);
+                System.out.println("Generated JDBC row mapper(s): " + nr);
                 System.out.println();
             }
 
@@ -98,15 +98,16 @@ public final class DbIntrospector {
         return cols;
     }
 
+    /** PK column names in key order (KEY_SEQ), which is also the order of composite key components. */
     private static Set<String> getPrimaryKeyColumns(DatabaseMetaData meta, String schema, String table) throws SQLException {
-        Set<String> pk = new HashSet<>();
+        TreeMap<Integer, String> bySeq = new TreeMap<>();
         try (ResultSet rs = meta.getPrimaryKeys(null, schema, table)) {
             while (rs.next()) {
                 String col = rs.getString("COLUMN_NAME");
-                if (col != null) pk.add(col.toUpperCase(Locale.ROOT));
+                if (col != null) bySeq.put((int) rs.getShort("KEY_SEQ"), col.toUpperCase(Locale.ROOT));
             }
         }
-        return pk;
+        return new LinkedHashSet<>(bySeq.values());
     }
 
     private static List<IndexModel> listIndexes(DatabaseMetaData meta, String schema, String table) throws SQLException {
@@ -6,6 +6,6 @@ import java.util.Set;
 public record TableModel(
         TableRef table,
         List<Col> cols,
-        Set<String> pkColsUpper,
+        Set<String> pkColsUpper,   // in key order (KEY_SEQ)
         List<IndexModel> indexes
 ) {}
@@ -0,0 +1,90 @@
+package org.github.dbjo.codegen.rdb;
+
+import org.github.dbjo.codegen.model.Col;
+import org.github.dbjo.codegen.model.TableModel;
+import org.github.dbjo.codegen.types.TypeMappings;
+
+import java.util.*;
+
+/**
+ * Primary key decisions shared by the schema, DAO and row-mapper generators: a single-column PK keys
+ * by its column type, a composite one by the {@code Key} record nested in the generated schema class,
+ * encoded with an ordered {@code KeyCodecs.tuple} so rows cluster by leading key columns.
+ */
+final class PrimaryKeys {
+    private PrimaryKeys() {}
+
+    /** PK columns in key order; empty when the table has none (or they cannot be resolved). */
+    static List<Col> columns(TableModel tm) {
+        if (tm.pkColsUpper() == null || tm.pkColsUpper().isEmpty()) return List.of();
+        Map<String, Col> byUpper = new HashMap<>();
+        for (Col c : tm.cols()) {
+            if (c.colName() != null) byUpper.put(c.colName().toUpperCase(Locale.ROOT), c);
+        }
+        List<Col> out = new ArrayList<>();
+        for (String pk : tm.pkColsUpper()) {
+            Col c = byUpper.get(pk);
+            if (c == null) return List.of();
+            out.add(c);
+        }
+        return out;
+    }
+
+    static boolean isComposite(TableModel tm) {
+        return columns(tm).size() > 1;
+    }
+
+    /**
+     * The key type as seen from outside the schema class, qualified (see {@link #qualified}) since
+     * generated schema and DAO classes import none of the column types.
+     */
+    static String keyType(TableModel tm, String schemaClass) {
+        if (isComposite(tm)) return schemaClass + ".Key";
+        return qualified(singleKeyJavaType(tm));
+    }
+
+    /** The bare bean type of a single-column key, as {@link #keyCodecExpr} and {@link #partExpr} take it. */
+    static String singleKeyJavaType(TableModel tm) {
+        List<Col> pk = columns(tm);
+        if (pk.isEmpty()) return "String"; // fallback
+        return TypeMappings.mapSqlTypeToJava(pk.get(0).sqlType(), null).javaType();
+    }
+
+    /** Fully qualified where the bean type is not in java.lang, so generated code needs no imports. */
+    static String qualified(String javaType) {
+        return switch (javaType) {
+            case "BigDecimal" -> "java.math.BigDecimal";
+            case "Date", "Time", "Timestamp" -> "java.sql." + javaType;
+            case "UUID" -> "java.util.UUID";
+            default -> javaType;
+        };
+    }
+
+    static String keyCodecExpr(String javaType) {
+        return switch (javaType) {
+            case "String" -> "KeyCodec.stringUtf8()";
+            case "Integer" -> "KeyCodec.int32()";
+            case "Long" -> "KeyCodec.int64()";
+            case "byte[]" -> "KeyCodec.bytes()";
+            default -> "KeyCodecs.of(" + partExpr(javaType) + ")";
+        };
+    }
+
+    static String partExpr(String javaType) {
+        return switch (javaType) {
+            case "Short" -> "KeyCodecs.Part.int16()";
+            case "Integer" -> "KeyCodecs.Part.int32()";
+            case "Long" -> "KeyCodecs.Part.int64()";
+            case "Float" -> "KeyCodecs.Part.float32()";
+            case "Double" -> "KeyCodecs.Part.float64()";
+            case "BigDecimal" -> "KeyCodecs.Part.decimal()";
+            case "Boolean" -> "KeyCodecs.Part.bool()";
+            case "Timestamp" -> "KeyCodecs.Part.timestamp()";
+            case "Date" -> "KeyCodecs.Part.date()";
+            case "Time" -> "KeyCodecs.Part.time()";
+            case "UUID" -> "KeyCodecs.Part.uuid()";
+            case "byte[]" -> "KeyCodecs.Part.bytes()";
+            default -> "KeyCodecs.Part.text()";
+        };
+    }
+}
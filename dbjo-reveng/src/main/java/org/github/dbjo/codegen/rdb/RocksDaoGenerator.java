@@ -32,7 +32,7 @@ public final class RocksDaoGenerator {
 
             String cfConst = Naming.toUpperSnake(Naming.toFieldName(tm.table().table())) + cfg.cfConstSuffix();
 
-            String keyType = inferKeyType(tm);
+            String keyType = PrimaryKeys.keyType(tm, schemaClass);
 
             String src = renderDao(cfg.daoPkg(), cfg.beanPkg(), cfg.schemaPkg(),
                     daoClass, beanClass, keyType, schemaClass, cfConst);
@@ -46,24 +46,6 @@ public final class RocksDaoGenerator {
         return count;
     }
 
-    private String inferKeyType(TableModel tm) {
-        if (tm.pkColsUpper().isEmpty()) return "String"; // fallback
-        if (tm.pkColsUpper().size() != 1) return "String"; // composite PK fallback
-
-        String pkUpper = tm.pkColsUpper().iterator().next();
-        Col pkCol = null;
-        for (Col c : tm.cols()) {
-            if (c.colName() != null && c.colName().toUpperCase(Locale.ROOT).equals(pkUpper)) {
-                pkCol = c;
-                break;
-            }
-        }
-        if (pkCol == null) return "String";
-
-        var jt = TypeMappings.mapSqlTypeToJava(pkCol.sqlType(), null);
-        return jt.javaType();
-    }
-
     private static String renderDao(
             String daoPkg,
             String beanPkg,
@@ -61,16 +61,12 @@ public final class RocksSchemaGenerator {
             if (c.colName() != null) colByUpper.put(c.colName().toUpperCase(Locale.ROOT), c);
         }
 
-        // Decide if we need helper idxKey(...) (composite or non-String indexed types)
-        boolean needIdxKey = false;
-        boolean needBase64 = false;
-
         record GenIndex(
                 IndexModel dbIdx,
                 String constName,
                 String constValue,
-                List<String> getters,     // like "getEmail"
-                boolean allStringSingles  // true if single-col and Java type is String
+                String codecExpr,     // IndexKeyCodec.int64(), IndexKeyCodec.tuple(...), ...
+                String extractorExpr  // User::getEmail or a lambda
         ) {}
 
         List<GenIndex> genIdx = new ArrayList<>();
@@ -78,45 +74,44 @@ public final class RocksSchemaGenerator {
             if (ix.indexName() == null || ix.indexName().isBlank()) continue;
             if (ix.columnNames() == null || ix.columnNames().isEmpty()) continue;
 
+            List<String> javaTypes = new ArrayList<>();
             List<String> getters = new ArrayList<>();
-            boolean allStringSingle = false;
-
-            if (ix.columnNames().size() == 1) {
-                Col c = colByUpper.get(ix.columnNames().get(0).toUpperCase(Locale.ROOT));
-                if (c != null) {
-                    var jt = TypeMappings.mapSqlTypeToJava(c.sqlType(), null);
-                    allStringSingle = "String".equals(jt.javaType());
-                    if ("byte[]".equals(jt.javaType())) needBase64 = true;
-                    if (!allStringSingle) needIdxKey = true;
-                } else {
-                    needIdxKey = true;
-                }
-            } else {
-                needIdxKey = true;
-                // if any component is byte[] we need Base64
-                for (String cn : ix.columnNames()) {
-                    Col c = colByUpper.get(cn.toUpperCase(Locale.ROOT));
-                    if (c != null) {
-                        var jt = TypeMappings.mapSqlTypeToJava(c.sqlType(), null);
-                        if ("byte[]".equals(jt.javaType())) needBase64 = true;
-                    }
-                }
-            }
-
             for (String cn : ix.columnNames()) {
+                Col c = colByUpper.get(cn.toUpperCase(Locale.ROOT));
+                javaTypes.add(c == null ? "String" : TypeMappings.mapSqlTypeToJava(c.sqlType(), null).javaType());
                 String prop = Naming.sanitizeJavaIdentifier(Naming.toFieldName(cn));
                 getters.add("get" + Naming.capitalize(prop));
             }
 
+            String codecExpr;
+            String extractorExpr;
+            if (getters.size() == 1) {
+                String jt = javaTypes.get(0);
+                // a lone String keeps stringUtf8(): same bytes as text() for ordinary text, and as before
+                codecExpr = "String".equals(jt) ? "IndexKeyCodec.stringUtf8()" : indexCodecExprFor(jt);
+                extractorExpr = needsWidening(jt)
+                        ? "(" + beanClass + " u) -> " + widened("u." + getters.get(0) + "()", jt)
+                        : beanClass + "::" + getters.get(0);
+            } else {
+                codecExpr = javaTypes.stream()
+                        .map(RocksSchemaGenerator::indexCodecExprFor)
+                        .collect(Collectors.joining(", ", "IndexKeyCodec.tuple(", ")"));
+                List<String> parts = new ArrayList<>();
+                for (int i = 0; i < getters.size(); i++) parts.add(widened("u." + getters.get(i) + "()", javaTypes.get(i)));
+                extractorExpr = "(" + beanClass + " u) -> new Object[]{" + String.join(", ", parts) + "}";
+            }
+
             String idxConstName = makeIndexConstName(ix.indexName(), cfName);
             String idxConstValue = ix.indexName(); // preserve DB index name as Rocks index name
 
-            genIdx.add(new GenIndex(ix, idxConstName, idxConstValue, getters, allStringSingle));
+            genIdx.add(new GenIndex(ix, idxConstName, idxConstValue, codecExpr, extractorExpr));
         }
 
-        // Key type + KeyCodec expr (best-guess mapping)
-        String keyType = inferKeyType(tm);
-        String keyCodecExpr = keyCodecExprFor(keyType);
+        // Key type + KeyCodec expr: column type for one PK column, the nested Key record for several
+        List<Col> pkCols = PrimaryKeys.columns(tm);
+        boolean compositeKey = pkCols.size() > 1;
+        String keyType = compositeKey ? "Key" : PrimaryKeys.keyType(tm, schemaClass);
+        String keyCodecExpr = compositeKey ? "KEY_CODEC" : PrimaryKeys.keyCodecExpr(PrimaryKeys.singleKeyJavaType(tm));
 
         StringBuilder sb = new StringBuilder(8000);
         sb.append("package ").append(cfg.schemaPkg()).append(";\n\n");
@@ -133,7 +128,6 @@ public final class RocksSchemaGenerator {
 
         sb.append("import org.rocksdb.ColumnFamilyHandle;\n");
         sb.append("import java.util.List;\n");
-        if (needBase64) sb.append("import java.util.Base64;\n");
         sb.append("\n");
 
         sb.append("public final class ").append(schemaClass).append(" {\n");
@@ -145,6 +139,8 @@ public final class RocksSchemaGenerator {
         }
         sb.append("\n");
 
+        if (compositeKey) renderCompositeKey(sb, pkCols, beanClass);
+
         // def(...)
         String cfParam = Naming.toLowerCamel(cfName) + "Cf"; // usersCf
         sb.append("    public static EntityDef<").append(beanClass).append(", ").append(keyType)
@@ -170,22 +166,13 @@ public final class RocksSchemaGenerator {
             for (int i = 0; i < genIdx.size(); i++) {
                 GenIndex g = genIdx.get(i);
 
-                String factory = g.dbIdx.unique() ? "unique" : "nonUnique"; // assumes IndexDef.nonUnique exists
-
-                String extractor;
-                if (g.allStringSingles && g.getters.size() == 1) {
-                    extractor = beanClass + "::" + g.getters.get(0);
-                } else {
-                    String args = g.getters.stream()
-                            .map(get -> "u." + get + "()")
-                            .collect(Collectors.joining(", "));
-                    extractor = "u -> idxKey(" + args + ")";
-                }
-
-                sb.append("                        IndexDef.").append(factory)
+                // unique DB indexes get the value -> pk layout: lookups are point gets, duplicates fail
+                sb.append("                        IndexDef.")
+                        .append(g.dbIdx.unique() ? "uniqueDirect" : "unique")
                         .append("(").append(g.constName)
-                        .append(", IndexKeyCodec.stringUtf8(), ")
-                        .append(extractor).append(")");
+                        .append(", ").append(g.codecExpr)
+                        .append(", ").append(g.extractorExpr)
+                        .append(g.dbIdx.unique() ? ", true)" : ")");
 
                 sb.append(i < genIdx.size() - 1 ? ",\n" : "\n");
             }
@@ -195,69 +182,87 @@ public final class RocksSchemaGenerator {
         sb.append("        );\n");
         sb.append("    }\n\n");
 
-        // idxKey helper (only if needed)
-        if (needIdxKey) {
-            sb.append("    /**\n");
-            sb.append("     * String index key builder. Returns null if any component is null (so index can skip nulls).\n");
-            sb.append("     * Composite keys are joined with '\\u0000'.\n");
-            sb.append("     */\n");
-            sb.append("    private static String idxKey(Object... parts) {\n");
-            sb.append("        if (parts == null || parts.length == 0) return null;\n");
-            sb.append("        for (Object p : parts) if (p == null) return null;\n");
-            sb.append("        if (parts.length == 1) return idxPart(parts[0]);\n");
-            sb.append("        StringBuilder sb = new StringBuilder();\n");
-            sb.append("        for (int i = 0; i < parts.length; i++) {\n");
-            sb.append("            if (i > 0) sb.append('\\u0000');\n");
-            sb.append("            sb.append(idxPart(parts[i]));\n");
-            sb.append("        }\n");
-            sb.append("        return sb.toString();\n");
-            sb.append("    }\n\n");
-
-            sb.append("    private static String idxPart(Object v) {\n");
-            sb.append("        if (v == null) return null;\n");
-            if (needBase64) {
-                sb.append("        if (v instanceof byte[] b) return Base64.getEncoder().encodeToString(b);\n");
-            } else {
-                sb.append("        if (v instanceof byte[]) return \"\"; // unreachable unless you add byte[] indexes\n");
-            }
-            sb.append("        if (v instanceof java.math.BigDecimal bd) return bd.toPlainString();\n");
-            sb.append("        return v.toString();\n");
-            sb.append("    }\n\n");
-        }
-
         sb.append("    private ").append(schemaClass).append("() {}\n");
         sb.append("}\n");
 
         return sb.toString();
     }
 
-    private String inferKeyType(TableModel tm) {
-        if (tm.pkColsUpper() == null || tm.pkColsUpper().isEmpty()) return "String";
-        if (tm.pkColsUpper().size() != 1) return "String"; // composite PK fallback
+    /**
+     * Nested {@code Key} record (components in PK order), its ordered tuple codec and a
+     * {@code keyOf(bean)} extractor. Rows then sort by the leading PK columns, so
+     * {@code KeyRange.prefix(new Key(a, null, ...))} scans one leading value without an index.
+     */
+    private static void renderCompositeKey(StringBuilder sb, List<Col> pkCols, String beanClass) {
+        List<String> names = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        List<String> getters = new ArrayList<>();
+        for (Col c : pkCols) {
+            String prop = Naming.sanitizeJavaIdentifier(Naming.toFieldName(c.colName()));
+            names.add(prop);
+            types.add(TypeMappings.mapSqlTypeToJava(c.sqlType(), null).javaType());
+            getters.add("e.get" + Naming.capitalize(prop) + "()");
+        }
 
-        String pkUpper = tm.pkColsUpper().iterator().next();
-        Col pkCol = null;
-        for (Col c : tm.cols()) {
-            if (c.colName() != null && c.colName().toUpperCase(Locale.ROOT).equals(pkUpper)) {
-                pkCol = c;
-                break;
-            }
+        sb.append("    /** Primary key; trailing components may be null in a partial key for KeyRange.prefix. */\n");
+        sb.append("    public record Key(");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(PrimaryKeys.qualified(types.get(i))).append(" ").append(names.get(i));
+        }
+        sb.append(") {}\n\n");
+
+        sb.append("    public static final KeyCodecs.Tuple<Key> KEY_CODEC = KeyCodecs.tuple(\n");
+        sb.append("            k -> new Object[]{");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("k.").append(names.get(i)).append("()");
+        }
+        sb.append("},\n");
+        sb.append("            v -> new Key(");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("(").append(PrimaryKeys.qualified(types.get(i))).append(") v[").append(i).append("]");
+        }
+        sb.append("),\n");
+        sb.append("            ");
+        for (int i = 0; i < types.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(PrimaryKeys.partExpr(types.get(i)));
         }
-        if (pkCol == null) return "String";
-        return TypeMappings.mapSqlTypeToJava(pkCol.sqlType(), null).javaType();
+        sb.append(");\n\n");
+
+        sb.append("    public static Key keyOf(").append(beanClass).append(" e) {\n");
+        sb.append("        return new Key(").append(String.join(", ", getters)).append(");\n");
+        sb.append("    }\n\n");
     }
 
-    private String keyCodecExprFor(String keyType) {
-        // best-guess based on your existing KeyCodec.stringUtf8()
-        return switch (keyType) {
-            case "String" -> "KeyCodec.stringUtf8()";
-            case "Integer", "Short" -> "KeyCodec.int32()";
-            case "Long" -> "KeyCodec.int64()";
-            case "byte[]" -> "KeyCodec.bytes()";
-            default -> "KeyCodec.stringUtf8()";
+    /** Order-preserving codec for one index component of the given bean type (see IndexKeyCodecs). */
+    private static String indexCodecExprFor(String javaType) {
+        return switch (javaType) {
+            case "Short", "Integer" -> "IndexKeyCodec.int32()";
+            case "Long" -> "IndexKeyCodec.int64()";
+            case "Float", "Double" -> "IndexKeyCodec.float64()";
+            case "BigDecimal" -> "IndexKeyCodec.decimal()";
+            case "Boolean" -> "IndexKeyCodec.bool()";
+            case "Date", "Time", "Timestamp" -> "IndexKeyCodec.timestamp()";
+            case "UUID" -> "IndexKeyCodec.uuid()";
+            case "byte[]" -> "IndexKeyCodec.bytes()";
+            default -> "IndexKeyCodec.text()";
         };
     }
 
+    /** Short and Float share the int32/float64 codecs, so their values are widened first. */
+    private static boolean needsWidening(String javaType) {
+        return "Short".equals(javaType) || "Float".equals(javaType);
+    }
+
+    private static String widened(String expr, String javaType) {
+        if (!needsWidening(javaType)) return expr;
+        String to = "Short".equals(javaType) ? "intValue" : "doubleValue";
+        return expr + " == null ? null : " + expr + "." + to + "()";
+    }
+
     private static String makeIndexConstName(String dbIndexName, String cfName) {
         // Heuristic: if index looks like "<cf>_<mid>_idx", use IDX_<MID>
         String n = dbIndexName.toLowerCase(Locale.ROOT);
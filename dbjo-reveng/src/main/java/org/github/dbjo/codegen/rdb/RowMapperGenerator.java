@@ -0,0 +1,165 @@
+package org.github.dbjo.codegen.rdb;
+
+import org.github.dbjo.codegen.Config;
+import org.github.dbjo.codegen.model.Col;
+import org.github.dbjo.codegen.model.TableModel;
+import org.github.dbjo.codegen.types.TypeMappings;
+import org.github.dbjo.codegen.util.FilesUtil;
+import org.github.dbjo.codegen.util.Naming;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Generates one {@code RowMapper} per table for {@code JdbcMigrator}: an explicit-column SELECT ordered by
+ * primary key, a {@code map(ResultSet)} that reads columns by ordinal with typed getters, and the key
+ * extractor matching the generated schema's key type. Tables without a primary key get no mapper.
+ */
+public final class RowMapperGenerator {
+    private final Config cfg;
+
+    public RowMapperGenerator(Config cfg) {
+        this.cfg = cfg;
+    }
+
+    public int generateAll(List<TableModel> tables) throws IOException {
+        Path outDir = cfg.codegenOutJava().resolve(cfg.rowMapperPkg().replace('.', '/'));
+        Files.createDirectories(outDir);
+
+        int count = 0;
+        for (TableModel tm : tables) {
+            if (PrimaryKeys.columns(tm).isEmpty()) {
+                // the migrator keys every row; a keyless table has nothing to key it by
+                System.out.println("Skip (no primary key): " + tm.table().table());
+                continue;
+            }
+            String beanClass = Naming.toClassName(tm.table().table());
+            String mapperClass = beanClass + cfg.rowMapperSuffix();
+
+            String src = renderMapper(tm, beanClass, mapperClass);
+
+            Path outFile = outDir.resolve(mapperClass + ".java");
+            FilesUtil.writeString(outFile, src, cfg.overwrite());
+            System.out.println("Wrote: " + outFile);
+            count++;
+        }
+        return count;
+    }
+
+    private String renderMapper(TableModel tm, String beanClass, String mapperClass) {
+        String pkg = cfg.rowMapperPkg();
+
+        // PK columns in key order; the SELECT then reads rows in the same order the key codec stores them
+        List<Col> pkCols = PrimaryKeys.columns(tm);
+        String schemaClass = beanClass + cfg.schemaClassSuffix();
+        String keyType = PrimaryKeys.keyType(tm, schemaClass);
+
+        String from = (tm.table().schema() == null ? "" : ident(tm.table().schema()) + ".") + ident(tm.table().table());
+        String select = "SELECT "
+                + tm.cols().stream().map(c -> ident(c.colName())).collect(Collectors.joining(", "))
+                + " FROM " + from
+                + " ORDER BY " + pkCols.stream().map(c -> ident(c.colName())).collect(Collectors.joining(", "));
+
+        Set<String> imports = new TreeSet<>();
+        imports.add("java.sql.ResultSet");
+        imports.add("java.sql.SQLException");
+        imports.add("org.github.dbjo.rdb.BulkLoader");
+        imports.add("org.github.dbjo.rdb.Dao");
+        imports.add("org.github.dbjo.rdb.JdbcMigrator");
+        imports.add("org.github.dbjo.rdb.RowMapper");
+        if (!cfg.beanPkg().equals(pkg)) imports.add(cfg.beanPkg() + "." + beanClass);
+        if (pkCols.size() > 1 && !cfg.schemaPkg().equals(pkg)) imports.add(cfg.schemaPkg() + "." + schemaClass);
+
+        StringBuilder body = new StringBuilder(2000);
+        int ord = 1;
+        for (Col c : tm.cols()) {
+            var jt = TypeMappings.mapSqlTypeToJava(c.sqlType(), imports);
+            String setter = "set" + Naming.capitalize(Naming.sanitizeJavaIdentifier(Naming.toFieldName(c.colName())));
+            String prim = primitiveGetter(jt.javaType());
+            if (prim != null) {
+                // primitive getters return 0 for NULL; wasNull() tells them apart
+                String local = "v" + ord;
+                body.append("        ").append(prim.split(" ")[0]).append(" ").append(local)
+                        .append(" = rs.").append(prim.split(" ")[1]).append("(").append(ord).append(");\n");
+                body.append("        e.").append(setter).append("(rs.wasNull() ? null : ").append(local).append(");\n");
+            } else {
+                body.append("        e.").append(setter).append("(rs.").append(objectGetter(jt.javaType()))
+                        .append("(").append(ord).append("));\n");
+            }
+            ord++;
+        }
+
+        String keyExpr = (pkCols.size() == 1)
+                ? "e.get" + Naming.capitalize(Naming.sanitizeJavaIdentifier(Naming.toFieldName(pkCols.get(0).colName()))) + "()"
+                : schemaClass + ".keyOf(e)";
+
+        StringBuilder sb = new StringBuilder(4000);
+        sb.append("package ").append(pkg).append(";\n\n");
+        for (String imp : imports) sb.append("import ").append(imp).append(";\n");
+        sb.append("\n");
+
+        sb.append("public final class ").append(mapperClass).append(" implements RowMapper<").append(beanClass).append("> {\n");
+        sb.append("    public static final String TABLE = \"").append(tm.table().table()).append("\";\n");
+        sb.append("    public static final String SELECT =\n");
+        sb.append("            \"").append(select.replace("\\", "\\\\").replace("\"", "\\\"")).append("\";\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    public ").append(beanClass).append(" map(ResultSet rs) throws SQLException {\n");
+        sb.append("        ").append(beanClass).append(" e = new ").append(beanClass).append("();\n");
+        sb.append(body);
+        sb.append("        return e;\n");
+        sb.append("    }\n\n");
+
+        sb.append("    public static ").append(keyType).append(" keyOf(").append(beanClass).append(" e) {\n");
+        sb.append("        return ").append(keyExpr).append(";\n");
+        sb.append("    }\n\n");
+
+        sb.append("    public static JdbcMigrator.Table<").append(beanClass).append(", ").append(keyType)
+                .append("> batched(Dao<").append(beanClass).append(", ").append(keyType).append("> dao) {\n");
+        sb.append("        return JdbcMigrator.Table.batched(TABLE, SELECT, new ").append(mapperClass)
+                .append("(), ").append(mapperClass).append("::keyOf, dao);\n");
+        sb.append("    }\n\n");
+
+        sb.append("    public static JdbcMigrator.Table<").append(beanClass).append(", ").append(keyType)
+                .append("> bulk(BulkLoader<").append(beanClass).append(", ").append(keyType).append("> loader) {\n");
+        sb.append("        return JdbcMigrator.Table.bulk(TABLE, SELECT, new ").append(mapperClass)
+                .append("(), ").append(mapperClass).append("::keyOf, loader);\n");
+        sb.append("    }\n");
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /** "type getter" for wrapper-typed columns read through a primitive getter, else null. */
+    private static String primitiveGetter(String javaType) {
+        return switch (javaType) {
+            case "Short" -> "short getShort";
+            case "Integer" -> "int getInt";
+            case "Long" -> "long getLong";
+            case "Float" -> "float getFloat";
+            case "Double" -> "double getDouble";
+            case "Boolean" -> "boolean getBoolean";
+            default -> null;
+        };
+    }
+
+    private static String objectGetter(String javaType) {
+        return switch (javaType) {
+            case "BigDecimal" -> "getBigDecimal";
+            case "Date" -> "getDate";
+            case "Time" -> "getTime";
+            case "Timestamp" -> "getTimestamp";
+            case "byte[]" -> "getBytes";
+            default -> "getString";
+        };
+    }
+
+    /** Plain identifiers go unquoted (so the source's case folding applies); anything else is quoted. */
+    private static String ident(String name) {
+        if (name.matches("[A-Za-z_][A-Za-z0-9_]*")) return name;
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+}